@@ -0,0 +1,5 @@
+#!/bin/bash
+# Runs the JMH benchmarks with the GC profiler for allocation rates.
+# Build first with: mvn clean package -Pbenchmark
+# Usage: ./bench.sh [jmh options], e.g. ./bench.sh JabejaBenchmark.round -p graph=ws-1000
+java -jar target/benchmarks.jar -prof gc $@
@@ -0,0 +1,5 @@
+#!/bin/bash
+# Writes the binary cache (.jbg) of the given graph files, which is then
+# picked up automatically while it is newer than the graph file.
+# Usage: ./convert.sh {graph-file} ...
+java -Xmx5000m -cp target/assignment4-jabeja-1.0-jar-with-dependencies.jar se.kth.jabeja.io.GraphCache $@
@@ -0,0 +1,6 @@
+#!/bin/bash
+# Scores partition files (one color per line, in graph file order) against
+# a graph: edge cut, communication volume, boundary nodes, external degree
+# and imbalance, overall and per partition.
+# Usage: ./evaluate.sh [-threads n] [-k partitions] [-offHeap] {graph-file} {partition-file} ...
+java ${JAVA_OPTS:--Xmx5000m} -cp target/assignment4-jabeja-1.0-jar-with-dependencies.jar se.kth.jabeja.io.PartitionEvaluator $@
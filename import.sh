@@ -0,0 +1,6 @@
+#!/bin/bash
+# Converts an edge list (one "u v" pair per line, e.g. graphs/TwitterGraph.net)
+# into the graph format, its binary cache and an id mapping, sorting on disk
+# within the given memory budget.
+# Usage: ./import.sh [-memory MB] [-tmpDir dir] [-noCache] {edge-list} {output-graph}
+java -Xmx1g -cp target/assignment4-jabeja-1.0-jar-with-dependencies.jar se.kth.jabeja.io.EdgeListImporter $@
@@ -1,2 +1,6 @@
 #!/bin/bash
-java -Xmx5000m -jar target/assignment4-jabeja-1.0-jar-with-dependencies.jar $@
+# JAVA_OPTS replaces the default heap size, e.g. for a run with -offHeap:
+#   JAVA_OPTS="-Xmx512m -XX:MaxDirectMemorySize=2g" ./run.sh -offHeap -graph ...
+# Mapped graph caches do not count against either limit. On JDK 16+ add
+# --add-modules jdk.incubator.vector to count color degrees with the Vector API.
+java ${JAVA_OPTS:--Xmx5000m} -jar target/assignment4-jabeja-1.0-jar-with-dependencies.jar $@
@@ -0,0 +1,17 @@
+#!/bin/bash
+# Reports rounds/sec for 1..N threads on the bundled synthetic graphs.
+# Usage: ./scaling.sh [max-threads] [rounds]
+
+MAX_THREADS=${1:-$(nproc)}
+ROUNDS=${2:-100}
+GRAPHS="synth-0.95-250 synth-0.95-1000 synth-0.95-5000 synth-0.95-10000 synth-0.95-25000 ws-250 ws-1000 ws-5000 ws-10000 ws-25000"
+
+for graph in $GRAPHS; do
+	threads=1
+	while [ $threads -le $MAX_THREADS ]; do
+		line=$(./run.sh -graph ./graphs/$graph.graph -rounds $ROUNDS -threads $threads -outputDir /tmp/jabeja-scaling | grep "rounds/sec")
+		rate=${line##*rounds/sec: }
+		echo -e "$graph\t$threads\t${rate%%,*}"
+		threads=$((threads * 2))
+	done
+done
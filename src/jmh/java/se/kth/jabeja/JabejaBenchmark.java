@@ -0,0 +1,201 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.Matching;
+import se.kth.jabeja.config.NodeOrdering;
+import se.kth.jabeja.config.NodeSchedule;
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.OutputFormat;
+import se.kth.jabeja.graph.EdgeCut;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.DistinctSampler;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link Jabeja}. Node level benchmarks cycle through all nodes
+ * of the graph, one node per invocation, so every graph is measured on its
+ * own degree distribution. Seeds are fixed, run with -prof gc for the
+ * allocation rate. The offHeap parameter compares the heap topology with
+ * the one mapped from the graph cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JabejaBenchmark {
+    static final int SEED = 0;
+    static final int NUM_PARTITIONS = 4;
+
+    @Param({"ws-250", "ws-1000", "ws-5000", "ws-10000", "ws-25000",
+            "synth-0.95-250", "synth-0.95-1000", "synth-0.95-5000", "synth-0.95-10000", "synth-0.95-25000",
+            "3elt", "4elt", "twitter"})
+    public String graph;
+
+    @Param("graphs")
+    public String graphDir;
+
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private Graph g;
+    private Jabeja jabeja;
+    private EdgeCut cut;
+    private Random rand;
+    private DistinctSampler sampler;
+    private IntArray sample;
+    private File outputDir;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger.getRootLogger().setLevel(Level.WARN);
+        // the generator can be seeded once per JVM, JMH forks one per trial
+        if (RandNoGenerator.getRandom() == null) {
+            RandNoGenerator.setSeed(SEED);
+        }
+        String path = graphDir + File.separator + graph + ".graph";
+        outputDir = Files.createTempDirectory("jabeja-bench").toFile();
+        Config config = config(path, outputDir.getPath()).setOffHeap(offHeap);
+        g = new GraphReader().readGraph(path, config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+                Runtime.getRuntime().availableProcessors(), offHeap);
+        jabeja = new Jabeja(g, config);
+        cut = new EdgeCut(g, NUM_PARTITIONS);
+        rand = new Random(SEED);
+        sampler = new DistinctSampler(rand, g.size(), config.getUniformRandomSampleSize());
+        sample = IntArray.wrap(sampler.buffer());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        jabeja.closeWriter();
+        File[] files = outputDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        outputDir.delete();
+    }
+
+    static Config config(String graphFilePath, String outputDir) {
+        return new Config().setRandNeighborsSampleSize(3)
+                .setDelta(0.003f)
+                .setNumPartitions(NUM_PARTITIONS)
+                .setUniformRandSampleSize(6)
+                .setRounds(1000)
+                .setSeed(SEED)
+                .setTemperature(2f)
+                .setGraphFilePath(graphFilePath)
+                .setNodeSelectionPolicy(NodeSelectionPolicy.HYBRID)
+                .setGraphInitialColorPolicy(GraphInitColorPolicy.ROUND_ROBIN)
+                .setOutputDir(outputDir)
+                .setOutputFormat(OutputFormat.TSV)
+                .setAlpha(2f)
+                .setThreads(1)
+                .setConvergenceWindow(0)
+                .setMinSwapRate(0f)
+                .setTimeBudget(0f)
+                .setWorkers(0)
+                .setCheckpointRounds(0)
+                .setCheckpointSeconds(0f)
+                .setResume(false)
+                .setNodeOrdering(NodeOrdering.NONE)
+                .setNodeSchedule(NodeSchedule.FULL)
+                .setExplorationProbability(0f)
+                .setImbalance(0.03f)
+                .setMultilevel(false)
+                .setMatching(Matching.HEAVY_EDGE)
+                .setCoarsestSize(100)
+                .setRefineRounds(20)
+                .setOffHeap(false);
+    }
+
+    private int nextNode() {
+        int v = next;
+        next = v + 1 == g.size() ? 0 : v + 1;
+        return v;
+    }
+
+    @Benchmark
+    public int findPartnerLocal() {
+        int p = nextNode();
+        IntArray offsets = g.getOffsets();
+        return jabeja.findPartner(p, g.getAdjacency(), offsets.get(p), offsets.get(p + 1));
+    }
+
+    @Benchmark
+    public int findPartnerSample() {
+        int p = nextNode();
+        int count = jabeja.getSample(sampler, p);
+        return jabeja.findPartner(p, sample, 0, count);
+    }
+
+    @Benchmark
+    public boolean swapColors() {
+        int p = nextNode();
+        int degree = g.getDegree(p);
+        int q = degree == 0 ? rand.nextInt(g.size()) : g.getAdjacency().get(g.getOffsets().get(p) + rand.nextInt(degree));
+        boolean swapped = jabeja.swapColors(p, q);
+        jabeja.acceptRound();
+        return swapped;
+    }
+
+    @Benchmark
+    public int getDegree() {
+        int p = nextNode();
+        return jabeja.getDegree(p, p % NUM_PARTITIONS);
+    }
+
+    @Benchmark
+    public int getSample() {
+        return jabeja.getSample(sampler, nextNode());
+    }
+
+    /**
+     * The full edge cut computation that E() used to do every round.
+     */
+    @Benchmark
+    public int edgeCut() {
+        cut.recompute();
+        return cut.getEdgeCut();
+    }
+
+    /**
+     * One complete round of sample and swap over all nodes.
+     */
+    @Benchmark
+    public void round() {
+        jabeja.sampleAndSwap();
+        jabeja.acceptRound();
+    }
+
+    @Benchmark
+    public void report() throws IOException {
+        jabeja.report();
+    }
+}
@@ -0,0 +1,122 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.NodeOrdering;
+import se.kth.jabeja.graph.EdgeCut;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+import se.kth.jabeja.graph.Reordering;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The memory bound parts of a round under every {@link NodeOrdering}.
+ * Compare each ordering against NONE on the same graph; for the cache
+ * misses behind the difference run on Linux with -prof perfnorm, which
+ * reports L1-dcache-load-misses and LLC-load-misses per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReorderingBenchmark {
+
+    @Param({"ws-25000", "synth-0.95-25000", "3elt", "4elt", "twitter"})
+    public String graph;
+
+    @Param({"NONE", "BFS", "RCM", "DEGREE", "GORDER"})
+    public NodeOrdering ordering;
+
+    @Param("graphs")
+    public String graphDir;
+
+    private Graph g;
+    private Jabeja jabeja;
+    private EdgeCut cut;
+    private File outputDir;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger.getRootLogger().setLevel(Level.WARN);
+        if (RandNoGenerator.getRandom() == null) {
+            RandNoGenerator.setSeed(JabejaBenchmark.SEED);
+        }
+        String path = graphDir + File.separator + graph + ".graph";
+        outputDir = Files.createTempDirectory("jabeja-bench").toFile();
+        Config config = JabejaBenchmark.config(path, outputDir.getPath()).setNodeOrdering(ordering);
+        g = new GraphReader().readGraph(path, config.getGraphInitialColorPolicy(), config.getNumPartitions());
+        g = Reordering.reorder(g, ordering);
+        jabeja = new Jabeja(g, config);
+        cut = new EdgeCut(g, JabejaBenchmark.NUM_PARTITIONS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        jabeja.closeWriter();
+        outputDir.delete();
+    }
+
+    /**
+     * One complete round of sample and swap over all nodes.
+     */
+    @Benchmark
+    public void round() {
+        jabeja.sampleAndSwap();
+        jabeja.acceptRound();
+    }
+
+    /**
+     * Local partner search of every node, reading the color degrees of all
+     * neighbours.
+     */
+    @Benchmark
+    public int findPartnerLocal() {
+        IntArray offsets = g.getOffsets();
+        IntArray adjacency = g.getAdjacency();
+        int found = 0;
+        for (int p = 0; p < g.size(); p++) {
+            if (jabeja.findPartner(p, adjacency, offsets.get(p), offsets.get(p + 1)) != -1) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Full edge cut, reading the color of every neighbour.
+     */
+    @Benchmark
+    public int edgeCut() {
+        cut.recompute();
+        return cut.getEdgeCut();
+    }
+
+    /**
+     * Cost of the ordering itself.
+     */
+    @Benchmark
+    public int[] order() {
+        return Reordering.order(g, ordering);
+    }
+}
@@ -0,0 +1,76 @@
+package se.kth.jabeja.graph;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.io.GraphReader;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scalar and the vector {@link ColorHistogram} kernel, counting the
+ * histograms of all nodes of a graph. The vector kernel is measured for
+ * more colors than {@link ColorHistogram#create} uses it for. Needs a
+ * JDK 16+ to run, the fork resolves the incubator module for it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class ColorHistogramBenchmark {
+    @Param({"ws-25000", "synth-0.95-25000", "4elt", "vibrobox", "twitter"})
+    public String graph;
+
+    @Param("graphs")
+    public String graphDir;
+
+    @Param({"4", "8", "16"})
+    public int numColors;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    private Graph g;
+    private ColorHistogram histogram;
+    private int[] buckets;
+
+    @Setup
+    public void setup() {
+        Logger.getRootLogger().setLevel(Level.WARN);
+        String path = graphDir + File.separator + graph + ".graph";
+        g = new GraphReader().readGraph(path, GraphInitColorPolicy.ROUND_ROBIN, numColors);
+        if (kernel.equals("vector")) {
+            histogram = ColorHistogram.vector(g, numColors);
+            if (histogram == null) {
+                throw new IllegalStateException("The vector kernel is not available");
+            }
+        } else {
+            histogram = ColorHistogram.scalar(g, numColors);
+        }
+        buckets = new int[numColors];
+    }
+
+    @Benchmark
+    public int histograms() {
+        int sum = 0;
+        for (int v = 0; v < g.size(); v++) {
+            histogram.count(v, buckets);
+            sum += buckets[v % numColors];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,83 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph loading: the line based reader, the memory-mapped parser and the
+ * binary cache. {@link #readGraph()} is what Main does, it uses a .jbg next
+ * to the graph file when there is a fresh one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphReaderBenchmark {
+    private static final int NUM_PARTITIONS = 4;
+
+    @Param({"ws-250", "ws-1000", "ws-5000", "ws-10000", "ws-25000",
+            "synth-0.95-250", "synth-0.95-1000", "synth-0.95-5000", "synth-0.95-10000", "synth-0.95-25000",
+            "3elt", "4elt", "twitter"})
+    public String graph;
+
+    @Param("graphs")
+    public String graphDir;
+
+    private String path;
+    private File cache;
+    private int threads;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger.getRootLogger().setLevel(Level.WARN);
+        path = graphDir + File.separator + graph + ".graph";
+        threads = Runtime.getRuntime().availableProcessors();
+        cache = File.createTempFile(graph, GraphCache.EXTENSION);
+        GraphCache.write(new MappedGraphReader(threads).read(path), cache);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.delete();
+    }
+
+    @Benchmark
+    public Graph readGraph() {
+        return new GraphReader().readGraph(path, GraphInitColorPolicy.ROUND_ROBIN, NUM_PARTITIONS);
+    }
+
+    @Benchmark
+    public Graph readGraphByLines() {
+        return new GraphReader().readGraphByLines(path, GraphInitColorPolicy.ROUND_ROBIN, NUM_PARTITIONS);
+    }
+
+    @Benchmark
+    public Graph readMapped() throws IOException {
+        return new MappedGraphReader(threads).read(path).toGraph(GraphInitColorPolicy.ROUND_ROBIN, NUM_PARTITIONS);
+    }
+
+    @Benchmark
+    public Graph readCache() throws IOException {
+        return GraphCache.read(cache).toGraph(GraphInitColorPolicy.ROUND_ROBIN, NUM_PARTITIONS);
+    }
+}
@@ -0,0 +1,138 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.config.NodeSchedule;
+import se.kth.jabeja.graph.ColorDegrees;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+
+/**
+ * The nodes visited by a round under {@link NodeSchedule#ACTIVE}, in index
+ * order. A node is visited if it or one of its neighbours changed color in
+ * the previous round, if it has a neighbour of another color, or if the
+ * exploration probability picks it. The first round visits every node.
+ *
+ * Exploration is a hash of the seed, the round and the node, so the set of
+ * a round does not depend on the generators of the algorithm or on how a
+ * parallel round was scheduled.
+ *
+ * The set can be confined to a region of the graph, then only nodes of the
+ * region are ever visited. A region with an exploration probability of 1
+ * visits the whole region every round.
+ */
+class ActiveSet {
+    private final IntArray offsets;
+    private final IntArray adjacency;
+    private final int[] colors;
+    private final ColorDegrees degrees;
+    /**
+     * Weighted degree of every node, null if the edges are unweighted.
+     */
+    private final int[] weightedDegrees;
+    private final long seed;
+    /**
+     * Exploration probability scaled to the 24 bits of the hash.
+     */
+    private final int explorationThreshold;
+    /**
+     * Nodes that may be visited, in index order, null for all nodes.
+     */
+    private final int[] region;
+    /**
+     * Nodes to visit next round because of a color change. Concurrent
+     * workers only ever set flags, so racing writes are harmless.
+     */
+    private final boolean[] touched;
+    private final int[] nodes;
+    private int size;
+
+    ActiveSet(Graph graph, ColorDegrees degrees, float exploration, long seed) {
+        this(graph, degrees, exploration, seed, null);
+    }
+
+    /**
+     * @param region the nodes that may be visited, in index order, or null for all nodes
+     */
+    ActiveSet(Graph graph, ColorDegrees degrees, float exploration, long seed, int[] region) {
+        this.offsets = graph.getOffsets();
+        this.adjacency = graph.getAdjacency();
+        this.colors = graph.getColors();
+        this.degrees = degrees;
+        if (graph.getEdgeWeights() != null) {
+            weightedDegrees = new int[graph.size()];
+            for (int v = 0; v < weightedDegrees.length; v++) {
+                weightedDegrees[v] = graph.getWeightedDegree(v);
+            }
+        } else {
+            weightedDegrees = null;
+        }
+        this.seed = seed;
+        this.explorationThreshold = (int) Math.min(1 << 24, Math.ceil(exploration * (1 << 24)));
+        this.touched = new boolean[graph.size()];
+        this.region = region;
+        this.nodes = new int[region != null ? region.length : graph.size()];
+        all();
+    }
+
+    /**
+     * Makes the next round visit every node.
+     */
+    void all() {
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = region != null ? region[i] : i;
+        }
+        size = nodes.length;
+    }
+
+    /**
+     * Records that node v changed color, so it and its neighbours are
+     * visited next round.
+     */
+    void touch(int v) {
+        touched[v] = true;
+        for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+            touched[adjacency.get(i)] = true;
+        }
+    }
+
+    /**
+     * Collects the nodes of the given round and clears the changes.
+     */
+    void next(int round) {
+        int count = 0;
+        // touched nodes outside the region are never read, so they are not cleared either
+        int candidates = region != null ? region.length : touched.length;
+        for (int i = 0; i < candidates; i++) {
+            int v = region != null ? region[i] : i;
+            if (touched[v]
+                    || degrees.get(v, colors[v]) < degree(v)
+                    || explore(round, v)) {
+                nodes[count++] = v;
+            }
+            touched[v] = false;
+        }
+        size = count;
+    }
+
+    private int degree(int v) {
+        return weightedDegrees == null ? offsets.get(v + 1) - offsets.get(v) : weightedDegrees[v];
+    }
+
+    private boolean explore(int round, int v) {
+        long h = seed * 0x9E3779B97F4A7C15L + ((long) round << 32 | v);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) (h >>> 40) < explorationThreshold;
+    }
+
+    /**
+     * The nodes of the round in nodes()[0, size()). Not a copy.
+     */
+    int[] nodes() {
+        return nodes;
+    }
+
+    int size() {
+        return size;
+    }
+}
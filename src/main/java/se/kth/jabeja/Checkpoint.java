@@ -0,0 +1,132 @@
+package se.kth.jabeja;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot of a run after a completed round, enough to continue it with
+ * exactly the same trajectory.
+ *
+ * Layout, all values little-endian:
+ * <pre>
+ *   int   magic "JBC1", int version
+ *   int   n, int number of colors
+ *   int   next round, float T, float Tr, int number of swaps
+ *   long  state of the generator
+ *   long  elapsed nanos
+ *   long  length of the result file
+ *   int   best edge cut, int round of the best edge cut
+ *   long  CRC32 of the arrays
+ *   int[n] colors
+ *   int[n] colors of the best partition
+ * </pre>
+ */
+class Checkpoint {
+    private static final int MAGIC = 0x3143424A; // "JBC1" read as little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 72;
+
+    int numColors;
+    int round;
+    float T;
+    float Tr;
+    int numberOfSwaps;
+    long randomState;
+    long elapsedNanos;
+    long resultFileLength;
+    int bestCut;
+    int bestRound;
+    int[] colors;
+    int[] bestColors;
+
+    /**
+     * Writes the checkpoint to a temporary file and renames it into place,
+     * so a crash while writing leaves the previous checkpoint intact.
+     */
+    void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        int n = colors.length;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 8 * n).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER_BYTES);
+        buf.asIntBuffer().put(colors).put(bestColors);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER_BYTES, 8 * n);
+
+        buf.position(0);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putInt(n).putInt(numColors)
+                .putInt(round).putFloat(T).putFloat(Tr).putInt(numberOfSwaps)
+                .putLong(randomState)
+                .putLong(elapsedNanos)
+                .putLong(resultFileLength)
+                .putInt(bestCut).putInt(bestRound)
+                .putLong(crc.getValue());
+        buf.position(0);
+
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+             FileChannel channel = out.getChannel()) {
+            out.setLength(0);
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to move " + tmp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * @param n number of nodes of the graph being resumed
+     * @throws IOException if the file is not a checkpoint of a graph of n nodes or is corrupt
+     */
+    static Checkpoint read(File file, int n) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            if (channel.size() != HEADER_BYTES + 8L * n) {
+                throw new IOException(file + " is not a checkpoint of a graph of " + n + " nodes");
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && channel.read(buf) > 0) {
+            }
+            buf.flip();
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException(file + " is not a checkpoint of version " + VERSION);
+            }
+            if (buf.getInt() != n) {
+                throw new IOException(file + " is not a checkpoint of a graph of " + n + " nodes");
+            }
+            Checkpoint c = new Checkpoint();
+            c.numColors = buf.getInt();
+            c.round = buf.getInt();
+            c.T = buf.getFloat();
+            c.Tr = buf.getFloat();
+            c.numberOfSwaps = buf.getInt();
+            c.randomState = buf.getLong();
+            c.elapsedNanos = buf.getLong();
+            c.resultFileLength = buf.getLong();
+            c.bestCut = buf.getInt();
+            c.bestRound = buf.getInt();
+            long checksum = buf.getLong();
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), HEADER_BYTES, 8 * n);
+            if (crc.getValue() != checksum) {
+                throw new IOException(file + " is corrupt, checksum mismatch");
+            }
+            c.colors = new int[n];
+            c.bestColors = new int[n];
+            buf.position(HEADER_BYTES);
+            buf.asIntBuffer().get(c.colors).get(c.bestColors);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.config.Config;
+
+/**
+ * Tracks the best partition of a run and decides when to stop it early.
+ * A run stops when one of the configured criteria holds:
+ * <ul>
+ *   <li>the edge cut has not improved on the best one for a window of rounds,</li>
+ *   <li>the temperature is down to 1 and the swaps per node in a round fall below a rate,</li>
+ *   <li>the wall-clock budget is used up.</li>
+ * </ul>
+ * A criterion set to 0 is off. With all criteria off the run always
+ * ends on its last round, so the best partition is not copied.
+ */
+class Convergence {
+    private final int window;
+    private final float minSwapRate;
+    private final long budgetNanos;
+    /**
+     * Colors of the best round, null when no criterion is on.
+     */
+    private final int[] bestColors;
+    private int bestCut;
+    private int bestRound;
+    private String reason;
+
+    /**
+     * @param colors  the initial colors, the first best partition
+     * @param edgeCut the edge cut of the initial colors
+     */
+    Convergence(Config config, int[] colors, int edgeCut) {
+        this.window = config.getConvergenceWindow();
+        this.minSwapRate = config.getMinSwapRate();
+        this.budgetNanos = (long) (config.getTimeBudget() * 1e9);
+        boolean stops = window > 0 || minSwapRate > 0 || budgetNanos > 0;
+        this.bestColors = stops ? colors.clone() : null;
+        this.bestCut = edgeCut;
+        this.bestRound = -1;
+    }
+
+    /**
+     * Records the state after a round.
+     *
+     * @param roundSwaps   swaps made in the round, including rolled back ones
+     * @param elapsedNanos time since the run started
+     * @return whether the run should stop
+     */
+    boolean update(int round, int edgeCut, int[] colors, int roundSwaps, float T, long elapsedNanos) {
+        if (edgeCut < bestCut) {
+            bestCut = edgeCut;
+            bestRound = round;
+            if (bestColors != null) {
+                System.arraycopy(colors, 0, bestColors, 0, colors.length);
+            }
+        }
+
+        if (window > 0 && round - bestRound >= window) {
+            reason = "no improvement in " + window + " rounds";
+        } else if (minSwapRate > 0 && T <= 1 && colors.length > 0
+                && (float) roundSwaps / colors.length < minSwapRate) {
+            reason = "swap rate " + String.format("%.5f", (float) roundSwaps / colors.length) +
+                    " below " + minSwapRate;
+        } else if (budgetNanos > 0 && elapsedNanos >= budgetNanos) {
+            reason = "time budget of " + (budgetNanos / 1e9) + " s used up";
+        }
+        return reason != null;
+    }
+
+    /**
+     * @return why the run stopped, or null if it ran all rounds
+     */
+    String getReason() {
+        return reason;
+    }
+
+    int getBestCut() {
+        return bestCut;
+    }
+
+    /**
+     * @return the round that reached the best edge cut, -1 for the initial colors
+     */
+    int getBestRound() {
+        return bestRound;
+    }
+
+    /**
+     * @return the colors of the best round, null when no criterion is on
+     */
+    int[] getBestColors() {
+        return bestColors;
+    }
+
+    /**
+     * Continues from the best partition of a checkpoint.
+     */
+    void restore(int bestCut, int bestRound, int[] bestColors) {
+        this.bestCut = bestCut;
+        this.bestRound = bestRound;
+        if (this.bestColors != null) {
+            System.arraycopy(bestColors, 0, this.bestColors, 0, bestColors.length);
+        }
+    }
+}
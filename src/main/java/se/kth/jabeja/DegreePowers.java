@@ -0,0 +1,64 @@
+package se.kth.jabeja;
+
+/**
+ * d^alpha for the color degrees d of a graph, used to weigh swap benefits.
+ *
+ * Degrees are mostly small integers, so the powers up to a bound are
+ * computed once per run instead of calling {@link Math#pow(double, double)}
+ * for every candidate. alpha = 1 and alpha = 2, the common settings, are
+ * plain integer arithmetic. All variants return exactly what Math.pow returns.
+ */
+public abstract class DegreePowers {
+
+    /**
+     * @param alpha     the exponent
+     * @param maxDegree largest degree to compute the power of up front,
+     *                  larger ones are computed when looked up
+     */
+    public static DegreePowers of(float alpha, int maxDegree) {
+        if (alpha == 1) {
+            return new Linear();
+        } else if (alpha == 2) {
+            return new Square();
+        } else {
+            return new Table(alpha, maxDegree);
+        }
+    }
+
+    /**
+     * @return d^alpha
+     */
+    public abstract double get(int d);
+
+    private static class Linear extends DegreePowers {
+        @Override
+        public double get(int d) {
+            return d;
+        }
+    }
+
+    private static class Square extends DegreePowers {
+        @Override
+        public double get(int d) {
+            return (long) d * d;
+        }
+    }
+
+    private static class Table extends DegreePowers {
+        private final float alpha;
+        private final double[] powers;
+
+        Table(float alpha, int maxDegree) {
+            this.alpha = alpha;
+            powers = new double[maxDegree + 1];
+            for (int d = 0; d <= maxDegree; d++) {
+                powers[d] = Math.pow(d, alpha);
+            }
+        }
+
+        @Override
+        public double get(int d) {
+            return d < powers.length ? powers[d] : Math.pow(d, alpha);
+        }
+    }
+}
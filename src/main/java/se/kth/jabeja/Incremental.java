@@ -0,0 +1,182 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.DynamicGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+import se.kth.jabeja.io.EdgeListImporter;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.GraphUpdates;
+import se.kth.jabeja.io.GraphWriter;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Repartitions a graph that changed since it was partitioned. The saved
+ * partition is the starting point and the initial colors, the updates are
+ * applied to a {@link DynamicGraph}, and {@link Jabeja} then only starts
+ * sample and swap from the nodes within {@link Config#getHops()} hops of
+ * the changed ones, for {@link Config#getRefineRounds()} rounds at
+ * temperature 1, so the rest of the partition stays where it was.
+ *
+ * Added nodes start in the lightest partition. Migrations are counted
+ * against the saved partition, or the partition an added node started in.
+ *
+ * The updated graph is written next to the partition, so the next updates
+ * can be applied to both. If nodes were removed, the remaining nodes get
+ * dense ids in the written graph, and the id each had in the updates is
+ * written to the graph file + {@value EdgeListImporter#IDS_EXTENSION}.
+ */
+public class Incremental {
+    final static Logger logger = Logger.getLogger(Incremental.class);
+    private static final String TAG = "_INC";
+
+    private final Graph graph;
+    private final Config config;
+    private final Random rand;
+
+    public Incremental(Graph graph, Config config) {
+        this(graph, config, RandNoGenerator.getRandom());
+    }
+
+    public Incremental(Graph graph, Config config, Random rand) {
+        this.graph = graph;
+        this.config = config;
+        this.rand = rand;
+    }
+
+    public void run() throws IOException {
+        long start = System.nanoTime();
+        int k = config.getNumPartitions();
+        File partitionFile = new File(config.getPartitionFilePath());
+        int[] previous = PartitionFile.read(partitionFile, graph.size());
+        for (int v = 0; v < previous.length; v++) {
+            if (previous[v] >= k) {
+                throw new IOException(partitionFile + " puts node " + (v + 1) + " in partition " + previous[v] +
+                        ", expected one in [0, " + k + ")");
+            }
+        }
+
+        DynamicGraph dynamic = new DynamicGraph(graph);
+        GraphUpdates updates = GraphUpdates.apply(new File(config.getUpdatesFilePath()), dynamic);
+        logger.info("applied " + updates.size() + " updates in " + seconds(start) + " s, " + updates);
+
+        int[] colors = Arrays.copyOf(previous, dynamic.capacity());
+        long[] weights = new long[k];
+        for (int v = 0; v < graph.size(); v++) {
+            if (dynamic.contains(v)) {
+                weights[colors[v]] += dynamic.getNodeWeight(v);
+            }
+        }
+        for (int v = graph.size(); v < dynamic.capacity(); v++) {
+            if (dynamic.contains(v)) {
+                colors[v] = lightest(weights);
+                weights[colors[v]] += dynamic.getNodeWeight(v);
+            }
+        }
+
+        int[] nodes = dynamic.nodes();
+        Graph updated = dynamic.toGraph(colors);
+        GraphReader.checkTotalEdgeWeight(updated);
+        int[] changed = new int[nodes.length];
+        int numChanged = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (dynamic.isChanged(nodes[i])) {
+                changed[numChanged++] = i;
+            }
+        }
+        int[] region = region(updated, Arrays.copyOf(changed, numChanged), config.getHops());
+        logger.info("region: " + region.length + " of " + updated.size() + " nodes, within " + config.getHops() +
+                " hops of " + numChanged + " changed nodes");
+
+        Config refine = config.copy().setRounds(config.getRefineRounds()).setTemperature(1f);
+        Jabeja jabeja = new Jabeja(updated, refine, rand, TAG, region);
+        int before = jabeja.getEdgeCut();
+        jabeja.startJabeja();
+
+        File graphFile = new File(Jabeja.outputFilePath(refine, TAG) + ".graph");
+        GraphWriter.write(updated, graphFile);
+        if (updates.nodesRemoved > 0) {
+            writeIds(nodes, new File(graphFile.getPath() + EdgeListImporter.IDS_EXTENSION));
+        }
+        logger.info("updated graph written to " + graphFile);
+
+        int migrations = jabeja.getMigrations();
+        logger.info("incremental run finished in " + seconds(start) + " s" +
+                ", edge cut: " + before + " -> " + jabeja.getEdgeCut() +
+                ", migrations: " + migrations + " (" +
+                String.format("%.2f", updated.size() == 0 ? 0.0 : 100.0 * migrations / updated.size()) + "% of the nodes)" +
+                ", node visits: " + jabeja.getMetrics().getNodeVisits() +
+                ", a full refinement visits " + (long) updated.size() * refine.getRounds());
+    }
+
+    private static int lightest(long[] weights) {
+        int lightest = 0;
+        for (int c = 1; c < weights.length; c++) {
+            if (weights[c] < weights[lightest]) {
+                lightest = c;
+            }
+        }
+        return lightest;
+    }
+
+    /**
+     * @param seeds nodes to start from
+     * @return the nodes within the given number of hops of the seeds, in index order
+     */
+    static int[] region(Graph g, int[] seeds, int hops) {
+        IntArray offsets = g.getOffsets();
+        IntArray adjacency = g.getAdjacency();
+        boolean[] reached = new boolean[g.size()];
+        int[] queue = new int[g.size()];
+        int size = 0;
+        for (int v : seeds) {
+            if (!reached[v]) {
+                reached[v] = true;
+                queue[size++] = v;
+            }
+        }
+        int from = 0;
+        for (int hop = 0; hop < hops && from < size; hop++) {
+            int to = size;
+            for (int i = from; i < to; i++) {
+                int v = queue[i];
+                for (int j = offsets.get(v); j < offsets.get(v + 1); j++) {
+                    int w = adjacency.get(j);
+                    if (!reached[w]) {
+                        reached[w] = true;
+                        queue[size++] = w;
+                    }
+                }
+            }
+            from = to;
+        }
+        int[] region = Arrays.copyOf(queue, size);
+        Arrays.sort(region);
+        return region;
+    }
+
+    /**
+     * Writes the 1-based id every node of the written graph had in the updates.
+     */
+    private static void writeIds(int[] nodes, File file) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file, false), 1 << 16)) {
+            for (int v : nodes) {
+                out.write(Integer.toString(v + 1));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String seconds(long start) {
+        return String.format("%.3f", (System.nanoTime() - start) / 1e9);
+    }
+}
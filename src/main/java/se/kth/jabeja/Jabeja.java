@@ -1,85 +1,360 @@
 package se.kth.jabeja;
 
-import jdk.nashorn.internal.runtime.FindProperty;
 import org.apache.log4j.Logger;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.NodeOrdering;
+import se.kth.jabeja.config.NodeSchedule;
 import se.kth.jabeja.config.NodeSelectionPolicy;
-import se.kth.jabeja.io.FileIO;
+import se.kth.jabeja.graph.ColorDegrees;
+import se.kth.jabeja.graph.EdgeCut;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+import se.kth.jabeja.graph.NeighbourhoodLocks;
+import se.kth.jabeja.graph.SwapJournal;
+import se.kth.jabeja.io.AsyncRoundWriter;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.io.RoundRecord;
+import se.kth.jabeja.io.RoundSink;
+import se.kth.jabeja.metrics.JabejaMetrics;
+import se.kth.jabeja.metrics.Phase;
+import se.kth.jabeja.rand.DistinctSampler;
+import se.kth.jabeja.rand.LcgRandom;
 import se.kth.jabeja.rand.RandNoGenerator;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class Jabeja {
     final static Logger logger = Logger.getLogger(Jabeja.class);
+    /**
+     * Lock stripes per thread when running in parallel.
+     */
+    private static final int LOCK_STRIPES_PER_THREAD = 1024;
     private final Config config;
-    private HashMap<Integer/*id*/, Node/*neighbors*/> entireGraph;
-    private final List<Integer> nodeIds;
+    private final Graph graph;
+    private final IntArray offsets;
+    private final IntArray adjacency;
+    private final int[] colors;
+    private final ColorDegrees degrees;
+    private final EdgeCut cut;
+    private final SwapJournal journal;
+    private final DegreePowers powers;
+    private final RoundWorker sequential;
+    private final JabejaMetrics metrics = new JabejaMetrics();
+    private final String tag;
+    /**
+     * Node weights of the graph and the total weight of every color, null
+     * when all nodes weigh 1 and swaps cannot change the balance.
+     */
+    private final int[] nodeWeights;
+    private final AtomicLongArray colorWeights;
+    private final long maxColorWeight;
+    /**
+     * Nodes visited by the next round, null when every round visits every node.
+     */
+    private final ActiveSet active;
+    private NeighbourhoodLocks locks;
     private int numberOfSwaps;
     private int round;
+    private int visits;
     private float T;
-    private float Tr;
-    private boolean resultFileCreated = false;
+    private AsyncRoundWriter writer;
+    private boolean appendResults;
+    private boolean writePartition = true;
+    private long startNanos;
 
     //-------------------------------------------------------------------
-    public Jabeja(HashMap<Integer, Node> graph, Config config) {
-        this.entireGraph = graph;
-        this.nodeIds = new ArrayList(entireGraph.keySet());
+    public Jabeja(Graph graph, Config config) {
+        this(graph, config, RandNoGenerator.getRandom());
+    }
+
+    /**
+     * @param rand generator of the sequential algorithm, runs that should not
+     *             share the application wide generator pass their own
+     */
+    public Jabeja(Graph graph, Config config, Random rand) {
+        this(graph, config, rand, "");
+    }
+
+    /**
+     * @param tag added to the names of the output files, see {@link #outputFilePath(Config, String)}
+     */
+    Jabeja(Graph graph, Config config, Random rand, String tag) {
+        this(graph, config, rand, tag, null);
+    }
+
+    /**
+     * @param region the only nodes sample and swap starts from, in index
+     *               order, or null for all nodes. Their partners may lie
+     *               anywhere in the graph.
+     */
+    Jabeja(Graph graph, Config config, Random rand, String tag, int[] region) {
+        this.graph = graph;
+        this.tag = tag;
+        this.offsets = graph.getOffsets();
+        this.adjacency = graph.getAdjacency();
+        this.colors = graph.getColors();
+        this.degrees = ColorDegrees.create(graph, config.getNumPartitions());
+        this.cut = new EdgeCut(graph, config.getNumPartitions());
+        this.journal = new SwapJournal();
+        this.powers = DegreePowers.of(config.getAlpha(), maxTabledDegree(graph));
+        this.sequential = new RoundWorker(rand, graph.size(), maxSampleSize(config));
         this.round = 0;
         this.numberOfSwaps = 0;
         this.config = config;
+        this.nodeWeights = graph.getNodeWeights();
+        if (nodeWeights != null) {
+            colorWeights = new AtomicLongArray(config.getNumPartitions());
+            for (int v = 0; v < graph.size(); v++) {
+                colorWeights.addAndGet(colors[v], nodeWeights[v]);
+            }
+            maxColorWeight = (long) Math.ceil(graph.getTotalNodeWeight() * (1 + config.getImbalance()) /
+                    config.getNumPartitions());
+        } else {
+            colorWeights = null;
+            maxColorWeight = 0;
+        }
         this.T = config.getTemperature();
-        this.Tr = T;
+        this.sequential.Tr = T;
+        this.startNanos = System.nanoTime();
+        if (config.getNodeSchedule() == NodeSchedule.ACTIVE) {
+            this.active = new ActiveSet(graph, degrees, config.getExplorationProbability(), config.getSeed(), region);
+        } else if (region != null) {
+            // exploring every node visits the whole region every round
+            this.active = new ActiveSet(graph, degrees, 1f, config.getSeed(), region);
+        } else {
+            this.active = null;
+        }
     }
 
-
-
-    private HashMap<Integer, Node> copyGraph(HashMap<Integer, Node> G){
-        HashMap<Integer, Node> copy = new HashMap<Integer, Node>();
-        for(Integer i : G.keySet()){
-            Node n = new Node(G.get(i));
-            copy.put(n.getId(), n);
-        }
-        return copy;
+    /**
+     * Leaves out the partition file, for runs whose colors are not the
+     * partition of the input graph.
+     */
+    void skipPartitionFile() {
+        writePartition = false;
     }
 
     //-------------------------------------------------------------------
     public void startJabeja() throws IOException {
-        for (round = 0; round < config.getRounds(); round++) {
-            HashMap<Integer, Node> oldGraph = copyGraph(entireGraph);
-            //float oldCost = E(nodeIds);
-            for (int id : entireGraph.keySet()) {
-                sampleAndSwap(id);
+        int threads = config.getThreads();
+        ParallelRound parallel = null;
+        if (threads > 1) {
+            locks = new NeighbourhoodLocks(graph, threads * LOCK_STRIPES_PER_THREAD);
+            parallel = new ParallelRound(this, graph.size(), threads, config.getSeed());
+        }
+
+        metrics.register(new File(config.getGraphFilePath()).getName());
+        Convergence convergence = new Convergence(config, colors, cut.getEdgeCut());
+        File checkpointFile = checkpointFile(config, tag);
+        int first = 0;
+        startNanos = System.nanoTime();
+        if (config.getResume()) {
+            first = resume(checkpointFile, convergence);
+        }
+        int rounds = first;
+        long lastCheckpoint = System.nanoTime();
+        try {
+            for (round = first; round < config.getRounds(); round++) {
+                metrics.startRound();
+                int oldCost = cut.getEdgeCut();
+                int oldSwaps = numberOfSwaps;
+                visits = active != null ? active.size() : graph.size();
+                metrics.visit(visits);
+                if (parallel != null) {
+                    if (active != null) {
+                        parallel.run(round, T, active.nodes(), active.size());
+                    } else {
+                        parallel.run(round, T);
+                    }
+                } else {
+                    sampleAndSwap();
+                }
+                metrics.endPhase(Phase.SAMPLE_AND_SWAP);
+
+                //one cycle for all nodes have completed.
+                //reduce the temperature
+                saCoolDown(oldCost);
+                sequential.Tr = T;
+                if (active != null) {
+                    active.next(round + 1);
+                }
+                metrics.endPhase(Phase.COOL_DOWN);
+                report();
+                metrics.endPhase(Phase.REPORT);
+                metrics.endRound(round, cut.getEdgeCut());
+                rounds++;
+
+                if (convergence.update(round, cut.getEdgeCut(), colors, numberOfSwaps - oldSwaps, T,
+                        System.nanoTime() - startNanos)) {
+                    break;
+                }
+
+                int everyRounds = config.getCheckpointRounds();
+                long everyNanos = (long) (config.getCheckpointSeconds() * 1e9);
+                if ((everyRounds > 0 && rounds % everyRounds == 0)
+                        || (everyNanos > 0 && System.nanoTime() - lastCheckpoint >= everyNanos)) {
+                    checkpoint(checkpointFile, convergence);
+                    lastCheckpoint = System.nanoTime();
+                }
             }
+        } finally {
+            if (parallel != null) {
+                parallel.shutdown();
+            }
+            closeWriter();
+            metrics.unregister();
+        }
 
-            //one cycle for all nodes have completed.
-            //reduce the temperature
-            saCoolDown(oldGraph);
-            Tr = T;
-            report();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        if (convergence.getReason() != null) {
+            int saved = config.getRounds() - rounds;
+            logger.info("stopped after " + rounds + " of " + config.getRounds() + " rounds, " +
+                    convergence.getReason() + ", saved " + saved + " rounds (" +
+                    String.format("%.1f", 100.0 * saved / config.getRounds()) + "%)");
+        }
+        if (convergence.getBestColors() != null && convergence.getBestCut() < cut.getEdgeCut()) {
+            restore(convergence.getBestColors());
+            logger.info("restored the best partition of round " + convergence.getBestRound() +
+                    ", edge cut: " + cut.getEdgeCut() + ", migrations: " + cut.getMigrations());
+        }
+        if (writePartition) {
+            File partitionFile = partitionFile(config, tag);
+            createOutputDir();
+            PartitionFile.write(graph.toOriginalOrder(colors), partitionFile);
+            logger.info("partition written to " + partitionFile);
+        }
+        logger.info("finished " + rounds + " rounds in " + String.format("%.3f", seconds) + " s" +
+                ", rounds/sec: " + String.format("%.2f", rounds / seconds) +
+                ", threads: " + threads);
+        logger.info(metrics);
+    }
+
+    /**
+     * @return the file the final partition of a run with the given config is
+     * written to, see {@link PartitionFile}
+     */
+    public static File partitionFile(Config config, String tag) {
+        return new File(outputFilePath(config, tag) + ".part." + config.getNumPartitions());
+    }
+
+    /**
+     * @return the checkpoint file of a run with the given config
+     */
+    public static File checkpointFile(Config config, String tag) {
+        return new File(outputFilePath(config, tag) + ".ckpt");
+    }
+
+    /**
+     * Snapshots the state after the current round. The result file is
+     * flushed first, so a resumed run can cut it back to this round.
+     */
+    private void checkpoint(File file, Convergence convergence) throws IOException {
+        writer.sync();
+        Checkpoint c = new Checkpoint();
+        c.numColors = config.getNumPartitions();
+        c.round = round + 1;
+        c.T = T;
+        c.Tr = sequential.Tr;
+        c.numberOfSwaps = numberOfSwaps;
+        c.randomState = randomState();
+        c.elapsedNanos = System.nanoTime() - startNanos;
+        c.resultFileLength = new File(outputFilePath(config, tag)).length();
+        c.colors = colors;
+        if (convergence.getBestColors() != null) {
+            c.bestCut = convergence.getBestCut();
+            c.bestRound = convergence.getBestRound();
+            c.bestColors = convergence.getBestColors();
+        } else {
+            // without stopping criteria the best partition is not tracked, the run keeps its current one
+            c.bestCut = cut.getEdgeCut();
+            c.bestRound = round;
+            c.bestColors = colors;
+        }
+        c.write(file);
+        logger.info("checkpoint after round " + round + " written to " + file);
+    }
+
+    /**
+     * Continues from a checkpoint: restores the partition and the state of
+     * the run, and cuts the result file back to the checkpointed round.
+     *
+     * @return the round to continue with
+     */
+    private int resume(File file, Convergence convergence) throws IOException {
+        Checkpoint c = Checkpoint.read(file, graph.size());
+        if (c.numColors != config.getNumPartitions()) {
+            throw new IOException(file + " is a checkpoint of " + c.numColors + " partitions, not " +
+                    config.getNumPartitions());
+        }
+        restore(c.colors);
+        journal.clear();
+        T = c.T;
+        sequential.Tr = c.Tr;
+        numberOfSwaps = c.numberOfSwaps;
+        if (!(sequential.rand instanceof LcgRandom)) {
+            throw new IllegalStateException("Resuming needs a " + LcgRandom.class.getSimpleName());
+        }
+        ((LcgRandom) sequential.rand).setState(c.randomState);
+        startNanos = System.nanoTime() - c.elapsedNanos;
+        convergence.restore(c.bestCut, c.bestRound, c.bestColors);
+
+        File results = new File(outputFilePath(config, tag));
+        if (results.length() < c.resultFileLength) {
+            throw new IOException(results + " is shorter than at the checkpoint");
+        }
+        try (RandomAccessFile out = new RandomAccessFile(results, "rw")) {
+            out.setLength(c.resultFileLength);
+        }
+        appendResults = true;
+        logger.info("resumed from " + file + " at round " + c.round + ", edge cut: " + cut.getEdgeCut());
+        return c.round;
+    }
+
+    private long randomState() {
+        if (!(sequential.rand instanceof LcgRandom)) {
+            throw new IllegalStateException("Checkpoints need a " + LcgRandom.class.getSimpleName());
+        }
+        return ((LcgRandom) sequential.rand).getState();
+    }
+
+    /**
+     * Recolors the nodes whose color differs from the given partition.
+     */
+    private void restore(int[] partition) {
+        for (int v = 0; v < partition.length; v++) {
+            if (colors[v] != partition[v]) {
+                recolor(sequential, v, partition[v]);
+            }
         }
     }
 
     private boolean maybeMove(float oldCost, float newCost, float T){
-        float r = new Random().nextFloat();
+        float r = sequential.rand.nextFloat();
         double p = Math.pow(Math.E, (oldCost-newCost)/T);
         return r < p;
     }
 
     /**
      * Simulated analealing cooling function
+     *
+     * @param oldCost edge cut at the start of the round
      */
-    private void saCoolDown(HashMap<Integer, Node> oldGraph) {
-        // TODO for second task
-        float newCost = E(entireGraph);
-        float oldCost = E(oldGraph);
-        System.out.println(oldCost +", "+ newCost +" "+(oldGraph == entireGraph));
+    private void saCoolDown(float oldCost) {
+        float newCost = cut.getEdgeCut();
         if (!(newCost < oldCost || (newCost >= oldCost && maybeMove(oldCost, newCost, T))))
         {
-            System.out.println("rejecting");
-            entireGraph = new HashMap<Integer, Node>(oldGraph);
+            if (logger.isDebugEnabled()) {
+                logger.debug("round " + round + " rejected, edge cut " + oldCost + " -> " + newCost +
+                        ", rolling back " + journal.size() + " swaps");
+            }
+            rollback();
+            metrics.rollback();
         }
+        journal.clear();
         if(T > 1){
             T *= 0.95;
         }
@@ -88,106 +363,239 @@ public class Jabeja {
         }
     }
 
-    private float E(HashMap<Integer, Node> G){
-        int sum = 0;
-        for (int i : G.keySet()) {
-            Node node = G.get(i);
-            int nodeColor = node.getColor();
-            ArrayList<Integer> nodeNeighbours = node.getNeighbours();
+    /**
+     * Runs sample and swap on every node, on the calling thread.
+     */
+    void sampleAndSwap() {
+        if (active != null) {
+            sampleAndSwap(sequential, active.nodes(), 0, active.size(), T);
+        } else {
+            sampleAndSwap(sequential, 0, graph.size(), T);
+        }
+        merge(sequential);
+    }
+
+    /**
+     * Accepts the swaps made so far without cooling down, for callers that
+     * drive swaps themselves instead of through {@link #startJabeja()}.
+     */
+    void acceptRound() {
+        journal.clear();
+    }
 
+    /**
+     * Creates a worker for a parallel round, see {@link ParallelRound}.
+     */
+    RoundWorker newConcurrentWorker(Random rand) {
+        return new RoundWorker(rand, graph.size(), maxSampleSize(config), cut.newDelta(), locks.newScratch());
+    }
 
-            if (nodeNeighbours != null) {
-                for (int n : nodeNeighbours) {
-                    Node p = G.get(n);
-                    int pColor = p.getColor();
+    private static int maxSampleSize(Config config) {
+        return Math.max(config.getUniformRandomSampleSize(), config.getRandomNeighborSampleSize());
+    }
 
-                    if (nodeColor != pColor)
-                        sum++;
-                }
-            }
+    /**
+     * Applies the buffered changes of a worker.
+     */
+    void merge(RoundWorker w) {
+        if (w.concurrent) {
+            cut.merge(w.cutDelta);
+        }
+        synchronized (this) {
+            numberOfSwaps += w.swaps;
         }
-        return sum/2;
+        metrics.add(w.candidates, w.localHits, w.randomHits, w.swaps, w.rejects);
+        w.swaps = 0;
+        w.candidates = 0;
+        w.localHits = 0;
+        w.randomHits = 0;
+        w.rejects = 0;
     }
 
+    /**
+     * Runs sample and swap on the nodes [from, to). The temperature of the
+     * worker starts where the sequential algorithm would have it when
+     * reaching node from, given temperature T at the start of the round.
+     */
+    void sampleAndSwap(RoundWorker w, int from, int to, float T) {
+        if (w.concurrent) {
+            w.Tr = Math.max(1, T - from * config.getDelta());
+        }
+        for (int id = from; id < to; id++) {
+            sampleAndSwap(w, id);
+        }
+    }
+
+    /**
+     * Runs sample and swap on the nodes nodes[from, to), which are in index
+     * order. Every node is visited at the temperature the full sweep would
+     * visit it at, so skipping nodes does not change the cooling within a
+     * round.
+     */
+    void sampleAndSwap(RoundWorker w, int[] nodes, int from, int to, float T) {
+        for (int i = from; i < to; i++) {
+            int p = nodes[i];
+            w.Tr = Math.max(1, T - p * config.getDelta());
+            sampleAndSwap(w, p);
+        }
+    }
 
     /**
      * Sample and swap algorith at node p
      *
-     * @param nodeId
+     * @param w the worker visiting p
+     * @param p dense node index
      */
-    private void sampleAndSwap(int nodeId) {
-        Node p = entireGraph.get(nodeId);
-        Node q = null;
+    private void sampleAndSwap(RoundWorker w, int p) {
+        int q = -1;
 
         if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
                 || config.getNodeSelectionPolicy() == NodeSelectionPolicy.LOCAL) {
-            q = findPartner(nodeId, p.getNeighbours().stream().toArray(Integer[]::new));
+            q = findPartner(p, adjacency, offsets.get(p), offsets.get(p + 1), w.Tr);
+            w.candidates += offsets.get(p + 1) - offsets.get(p);
+            if (q != -1) {
+                w.localHits++;
+            }
             // swap with random neighbors
         }
 
         if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
                 || config.getNodeSelectionPolicy() == NodeSelectionPolicy.RANDOM) {
             // if local policy fails then randomly sample the entire graph
-            if (q == null) {
-                q = findPartner(nodeId, getSample(nodeId));
+            if (q == -1) {
+                int count = getSample(w.sampler, p);
+                q = findPartner(p, w.sample, 0, count, w.Tr);
+                w.candidates += count;
+                if (q != -1) {
+                    w.randomHits++;
+                }
             }
         }
 
-        if (q != null) {
-            if(swapColors(p, q) == true){
+        if (q != -1) {
+            if(swapColors(w, p, q) == true){
             }
         }
 
-        Tr -= config.getDelta();
-        if (Tr < 1) {
-            Tr = 1;
+        w.Tr -= config.getDelta();
+        if (w.Tr < 1) {
+            w.Tr = 1;
         }
     }
 
 
-    public boolean swapColors(Node p, Node q) {
-        int dpq = getDegree(p, q.getColor());
-        int dpp = getDegree(p, p.getColor());
-        int dqp = getDegree(q, p.getColor());
-        int dqq = getDegree(q, q.getColor());
-        float a = config.getAlpha();
-        double c1 = (Math.pow(dpq, a) + Math.pow(dqp, a));
-        double c2 = (Math.pow(dpp, a) + Math.pow(dqq, a));
-        if (c1 * Tr > c2) {
-            int old = p.getColor();
-            p.setColor(q.getColor());
-            q.setColor(old);
-            numberOfSwaps += 1;
-            return true;
+    public boolean swapColors(int p, int q) {
+        return swapColors(sequential, p, q);
+    }
+
+    /**
+     * Swaps the colors of p and q if that improves the cost. A concurrent
+     * worker holds the locks of both neighbourhoods while deciding, so the
+     * decision is made on colors no other worker can change meanwhile.
+     */
+    private boolean swapColors(RoundWorker w, int p, int q) {
+        int[] stripes = null;
+        if (w.concurrent) {
+            stripes = locks.lock(p, q, w.lockScratch);
+            w.lockScratch = stripes;
+        }
+        try {
+            int dpq = getDegree(p, colors[q]);
+            int dpp = getDegree(p, colors[p]);
+            int dqp = getDegree(q, colors[p]);
+            int dqq = getDegree(q, colors[q]);
+            double c1 = powers.get(dpq) + powers.get(dqp);
+            double c2 = powers.get(dpp) + powers.get(dqq);
+            if (c1 * w.Tr > c2 && balanced(p, q)) {
+                int old = colors[p];
+                record(w, p, q, old, colors[q]);
+                recolor(w, p, colors[q]);
+                recolor(w, q, old);
+                w.swaps += 1;
+                return true;
+            }
+            w.rejects += 1;
+            return false;
+        } finally {
+            if (stripes != null) {
+                locks.unlock(stripes);
+            }
         }
-        return false;
     }
 
-    public Node findPartner(int p, Integer[] nodes) {
+    /**
+     * Appends a swap to the journal. Concurrent workers append while holding
+     * the locks of the swap, so swaps touching the same node are journaled
+     * in the order they happened.
+     */
+    private void record(RoundWorker w, int p, int q, int oldColorP, int oldColorQ) {
+        if (w.concurrent) {
+            synchronized (journal) {
+                journal.record(p, q, oldColorP, oldColorQ);
+            }
+        } else {
+            journal.record(p, q, oldColorP, oldColorQ);
+        }
+    }
 
+    /**
+     * Undoes all swaps of the current round, newest first.
+     */
+    private void rollback() {
+        for (int i = journal.size() - 1; i >= 0; i--) {
+            recolor(sequential, journal.getP(i), journal.getOldColorP(i));
+            recolor(sequential, journal.getQ(i), journal.getOldColorQ(i));
+        }
+        journal.clear();
+    }
 
-        Node bestPartner = null;
-        double highestBenefit = 0;
+    /**
+     * Sets the color of node v and updates the color degrees and the edge cut.
+     */
+    private void recolor(RoundWorker w, int v, int color) {
+        int old = colors[v];
+        colors[v] = color;
+        degrees.recolor(v, old, color);
+        if (colorWeights != null) {
+            colorWeights.addAndGet(old, -nodeWeights[v]);
+            colorWeights.addAndGet(color, nodeWeights[v]);
+        }
+        if (active != null) {
+            active.touch(v);
+        }
+        if (w.concurrent) {
+            cut.recolor(v, old, color, w.cutDelta);
+        } else {
+            cut.recolor(v, old, color);
+        }
+    }
 
+    public int findPartner(int p, IntArray nodes, int from, int to) {
+        return findPartner(p, nodes, from, to, sequential.Tr);
+    }
 
-        Node pNode = entireGraph.get(p);
+    /**
+     * Picks the best swap partner for p among nodes[from, to)
+     *
+     * @param Tr current temperature
+     * @return dense index of the partner, or -1 if none improves the cost
+     */
+    private int findPartner(int p, IntArray nodes, int from, int to, float Tr) {
+        int bestPartner = -1;
+        double highestBenefit = 0;
 
-        double old = 0;
-        double newV = 0;
-        float a = config.getAlpha();
+        int pColor = colors[p];
+        double oldP = powers.get(getDegree(p, pColor));
 
-        for (int q : nodes) {
-            Node qNode = entireGraph.get(q);
+        for (int i = from; i < to; i++) {
+            int q = nodes.get(i);
+            int qColor = colors[q];
 
-            int dpp = getDegree(pNode, pNode.getColor());
-            int dqq = getDegree(qNode, qNode.getColor());
-            old = Math.pow(dpp, a) + Math.pow(dqq, a);
-            int dpq = getDegree(pNode, qNode.getColor());
-            int dqp = getDegree(qNode, pNode.getColor());
-            newV = Math.pow(dpq, a) + Math.pow(dqp, a);
+            double old = oldP + powers.get(getDegree(q, qColor));
+            double newV = powers.get(getDegree(p, qColor)) + powers.get(getDegree(q, pColor));
 
-            if (newV * Tr > old && newV > highestBenefit) {
-                bestPartner = qNode;
+            if (newV * Tr > old && newV > highestBenefit && balanced(p, q)) {
+                bestPartner = q;
                 highestBenefit = newV;
             }
         }
@@ -195,49 +603,66 @@ public class Jabeja {
         return bestPartner;
     }
 
+    /**
+     * Whether swapping the colors of p and q keeps the color weights within
+     * the allowed imbalance, or at least makes the heavier color lighter.
+     * Always true for unweighted nodes. Concurrent workers read the color
+     * weights without holding a lock, so a parallel round may overshoot the
+     * bound by the swaps racing with each other.
+     */
+    private boolean balanced(int p, int q) {
+        if (nodeWeights == null || nodeWeights[p] == nodeWeights[q]) {
+            return true;
+        }
+        int pColor = colors[p];
+        int qColor = colors[q];
+        if (pColor == qColor) {
+            return true;
+        }
+        long pWeight = colorWeights.get(pColor);
+        long qWeight = colorWeights.get(qColor);
+        long pAfter = pWeight - nodeWeights[p] + nodeWeights[q];
+        long qAfter = qWeight - nodeWeights[q] + nodeWeights[p];
+        return (pAfter <= maxColorWeight && qAfter <= maxColorWeight)
+                || Math.max(pAfter, qAfter) < Math.max(pWeight, qWeight);
+    }
+
+    /**
+     * @return largest degree to table the powers of: the largest weighted
+     * degree, but with large edge weights at most the largest unweighted
+     * degree or 2^16, so the table stays small
+     */
+    private static int maxTabledDegree(Graph graph) {
+        int maxDegree = 0;
+        int maxWeightedDegree = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            maxDegree = Math.max(maxDegree, graph.getDegree(v));
+            maxWeightedDegree = Math.max(maxWeightedDegree, graph.getWeightedDegree(v));
+        }
+        return Math.min(maxWeightedDegree, Math.max(maxDegree, 1 << 16));
+    }
+
     /**
      * The the degreee on the node based on color
      *
      * @param node
      * @param colorId
-     * @return how many neighbors of the node have color == colorId
-     */
-    private int getDegree(Node node, int colorId) {
-        int degree = 0;
-        for (int neighborId : node.getNeighbours()) {
-            Node neighbor = entireGraph.get(neighborId);
-            if (neighbor.getColor() == colorId) {
-                degree++;
-            }
-        }
-        return degree;
+     * @return how many neighbors of the node have color == colorId, or the
+     * weight of the edges to them if the graph has edge weights
+     */
+    int getDegree(int node, int colorId) {
+        return degrees.get(node, colorId);
     }
 
     /**
      * Returns a uniformly random sample of the graph
      *
+     * @param sampler       the sampler of the worker, receives the sample
      * @param currentNodeId
-     * @return Returns a uniformly random sample of the graph
-     */
-    private Integer[] getSample(int currentNodeId) {
-        int count = config.getUniformRandomSampleSize();
-        int rndId;
-        int size = entireGraph.size();
-        ArrayList<Integer> rndIds = new ArrayList<Integer>();
-
-        while (true) {
-            rndId = nodeIds.get(RandNoGenerator.nextInt(size));
-            if (rndId != currentNodeId && !rndIds.contains(rndId)) {
-                rndIds.add(rndId);
-                count--;
-            }
-
-            if (count == 0)
-                break;
-        }
-
-        Integer[] ids = new Integer[rndIds.size()];
-        return rndIds.toArray(ids);
+     * @return the number of sampled nodes in the sampler buffer
+     */
+    int getSample(DistinctSampler sampler, int currentNodeId) {
+        return sampler.sample(graph.size(), config.getUniformRandomSampleSize(), currentNodeId);
     }
 
     /**
@@ -245,35 +670,12 @@ public class Jabeja {
      * -closeByNeighbors command line argument which can be obtained from the config
      * using {@link Config#getRandomNeighborSampleSize()}
      *
+     * @param sampler the sampler of the worker, receives the sample
      * @param node
-     * @return
-     */
-    private Integer[] getNeighbors(Node node) {
-        ArrayList<Integer> list = node.getNeighbours();
-        int count = config.getRandomNeighborSampleSize();
-        int rndId;
-        int index;
-        int size = list.size();
-        ArrayList<Integer> rndIds = new ArrayList<Integer>();
-
-        if (size <= count)
-            rndIds.addAll(list);
-        else {
-            while (true) {
-                index = RandNoGenerator.nextInt(size);
-                rndId = list.get(index);
-                if (!rndIds.contains(rndId)) {
-                    rndIds.add(rndId);
-                    count--;
-                }
-
-                if (count == 0)
-                    break;
-            }
-        }
-
-        Integer[] arr = new Integer[rndIds.size()];
-        return rndIds.toArray(arr);
+     * @return the number of sampled neighbours in the sampler buffer
+     */
+    private int getNeighbors(DistinctSampler sampler, int node) {
+        return sampler.sample(adjacency, offsets.get(node), offsets.get(node + 1), config.getRandomNeighborSampleSize());
     }
 
 
@@ -282,48 +684,81 @@ public class Jabeja {
      *
      * @throws IOException
      */
-    private void report() throws IOException {
-        int grayLinks = 0;
-        int migrations = 0; // number of nodes that have changed the initial color
-        int size = entireGraph.size();
+    void report() throws IOException {
+        int edgeCut = cut.getEdgeCut();
+        int migrations = cut.getMigrations(); // number of nodes that have changed the initial color
 
-        for (int i : entireGraph.keySet()) {
-            Node node = entireGraph.get(i);
-            int nodeColor = node.getColor();
-            ArrayList<Integer> nodeNeighbours = node.getNeighbours();
+        logger.info("round: " + round +
+                ", edge cut:" + edgeCut +
+                ", swaps: " + numberOfSwaps +
+                ", migrations: " + migrations +
+                ", color cuts: " + Arrays.toString(cut.getColorCuts()) +
+                (colorWeights != null ? ", color weights: " + colorWeights : "") +
+                (active != null ? ", active: " + visits : ""));
 
-            if (nodeColor != node.getInitColor()) {
-                migrations++;
-            }
+        saveToFile(edgeCut, migrations);
+    }
 
-            if (nodeNeighbours != null) {
-                for (int n : nodeNeighbours) {
-                    Node p = entireGraph.get(n);
-                    int pColor = p.getColor();
+    public int getEdgeCut() {
+        return cut.getEdgeCut();
+    }
 
-                    if (nodeColor != pColor)
-                        grayLinks++;
-                }
-            }
-        }
+    public int getColorCut(int color) {
+        return cut.getColorCut(color);
+    }
 
-        int edgeCut = grayLinks / 2;
+    public int getMigrations() {
+        return cut.getMigrations();
+    }
 
-        logger.info("round: " + round +
-                ", edge cut:" + edgeCut +
-                ", swaps: " + numberOfSwaps +
-                ", migrations: " + migrations);
+    public int getNumberOfSwaps() {
+        return numberOfSwaps;
+    }
 
-        saveToFile(edgeCut, migrations);
+    public JabejaMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the remaining rounds and closes the result file.
+     *
+     * @throws IOException
+     */
+    void closeWriter() throws IOException {
+        if (writer != null) {
+            AsyncRoundWriter w = writer;
+            writer = null;
+            w.close();
+        }
     }
 
     private void saveToFile(int edgeCuts, int migrations) throws IOException {
-        String delimiter = "\t\t";
-        String outputFilePath;
+        if (writer == null) {
+            createOutputDir();
+            writer = new AsyncRoundWriter(RoundSink.open(config.getOutputFormat(),
+                    new File(outputFilePath(config, tag)), appendResults));
+        }
+
+        writer.write(new RoundRecord(round, edgeCuts, numberOfSwaps, migrations, T, System.nanoTime() - startNanos));
+    }
+
+    private void createOutputDir() throws IOException {
+        File outputDir = new File(config.getOutputDir());
+        if (!outputDir.exists()) {
+            if (!outputDir.mkdir()) {
+                throw new IOException("Unable to create the output directory");
+            }
+        }
+    }
 
+    /**
+     * @param tag appended to the name, to tell apart runs the parameters do not
+     * @return path of the result file of a run with the given config
+     */
+    public static String outputFilePath(Config config, String tag) {
         //output file name
         File inputFile = new File(config.getGraphFilePath());
-        outputFilePath = config.getOutputDir() +
+        return config.getOutputDir() +
                 File.separator +
                 inputFile.getName() + "_" +
                 "NS" + "_" + config.getNodeSelectionPolicy() + "_" +
@@ -333,22 +768,10 @@ public class Jabeja {
                 "RNSS" + "_" + config.getRandomNeighborSampleSize() + "_" +
                 "URSS" + "_" + config.getUniformRandomSampleSize() + "_" +
                 "A" + "_" + config.getAlpha() + "_" +
-                "R" + "_" + config.getRounds() + ".txt";
-
-        if (!resultFileCreated) {
-            File outputDir = new File(config.getOutputDir());
-            if (!outputDir.exists()) {
-                if (!outputDir.mkdir()) {
-                    throw new IOException("Unable to create the output directory");
-                }
-            }
-            // create folder and result file with header
-            String header = "# Migration is number of nodes that have changed color.";
-            header += "\n\nRound" + delimiter + "Edge-Cut" + delimiter + "Swaps" + delimiter + "Migrations" + delimiter + "Skipped" + "\n";
-            FileIO.write(header, outputFilePath);
-            resultFileCreated = true;
-        }
-
-        FileIO.append(round + delimiter + (edgeCuts) + delimiter + numberOfSwaps + delimiter + migrations + "\n", outputFilePath);
+                "R" + "_" + config.getRounds() +
+                (config.getNodeOrdering() == NodeOrdering.NONE ? "" : "_" + "O" + "_" + config.getNodeOrdering()) +
+                (config.getNodeSchedule() == NodeSchedule.FULL ? "" : "_" + "S" + "_" + config.getNodeSchedule() +
+                        "_" + config.getExplorationProbability()) +
+                tag + config.getOutputFormat().getExtension();
     }
 }
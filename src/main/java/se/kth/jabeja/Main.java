@@ -4,11 +4,14 @@ import org.apache.log4j.Logger;
 import se.kth.jabeja.io.CLI;
 import se.kth.jabeja.io.GraphReader;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.dist.Coordinator;
+import se.kth.jabeja.config.NodeOrdering;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.Reordering;
 import se.kth.jabeja.rand.RandNoGenerator;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
 
 
 public class Main {
@@ -19,25 +22,40 @@ public class Main {
      */
     private Config config;
 
-    HashMap<Integer, Node> graph;
+    Graph graph;
 
     public static void main(String[] args) throws IOException {
         new Main().startApp(args);
     }
 
     private void startApp(String[] args) throws IOException {
-        config = (new CLI()).parseArgs(args);
+        CLI cli = new CLI();
+        config = cli.parseArgs(args);
 
         //set seed for the application
         //Note for the results to be deterministic use
         //only one random generator.
         RandNoGenerator.setSeed(config.getSeed());
 
+        //the workers of a distributed run read the graph themselves
+        if (config.getWorkers() > 0) {
+            new Coordinator(config).run();
+            return;
+        }
+
         //read the input graph
-        HashMap<Integer, Node> graph = readGraph();
+        Graph graph = readGraph();
 
         //start JaBeJa
-        startJabeja(graph);
+        if (config.getMultilevel()) {
+            new Multilevel(graph, config).run();
+        } else if (cli.isIncremental()) {
+            new Incremental(graph, config).run();
+        } else if (cli.isSweep()) {
+            new Sweep(graph, cli.getSweepVariants(config), cli.getSweepParallelism()).run();
+        } else {
+            startJabeja(graph);
+        }
     }
 
     /**
@@ -45,9 +63,20 @@ public class Main {
      *
      * @return
      */
-    private HashMap<Integer, Node> readGraph() {
+    private Graph readGraph() {
         GraphReader graphReader = new GraphReader();
-        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(), config.getNumPartitions());
+        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+                Runtime.getRuntime().availableProcessors(), config.getOffHeap());
+        NodeOrdering ordering = config.getNodeOrdering();
+        if (ordering != NodeOrdering.NONE) {
+            long start = System.nanoTime();
+            double before = Reordering.meanArcDistance(graph);
+            graph = Reordering.reorder(graph, ordering);
+            logger.info(ordering + " node ordering in " +
+                    String.format("%.3f", (System.nanoTime() - start) / 1e9) + " s" +
+                    ", mean arc distance: " + String.format("%.1f", before) +
+                    " -> " + String.format("%.1f", Reordering.meanArcDistance(graph)));
+        }
         return graph;
     }
 
@@ -57,7 +86,7 @@ public class Main {
      * @param graph
      * @return
      */
-    private void startJabeja(HashMap<Integer, Node> graph) throws IOException {
+    private void startJabeja(Graph graph) throws IOException {
         Jabeja host = new Jabeja(graph, config);
         host.startJabeja();
     }
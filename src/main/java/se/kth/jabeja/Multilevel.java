@@ -0,0 +1,146 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Coarsening;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Multilevel partitioning around {@link Jabeja}. The graph is coarsened by
+ * matching until it has at most {@link Config#getCoarsestSize()} nodes, the
+ * coarsest level is partitioned with the configured rounds and
+ * temperature, and the colors are then projected back level by level,
+ * each level getting {@link Config#getRefineRounds()} rounds at temperature
+ * 1 to fix what the coarser level could not see.
+ *
+ * Coarse nodes and edges carry the weights of what they contain, so the
+ * cut on every level is the cut of the original graph, and swaps keep the
+ * colors within {@link Config#getImbalance()} of the average weight.
+ */
+public class Multilevel {
+    final static Logger logger = Logger.getLogger(Multilevel.class);
+    /**
+     * Coarsening stops once a level keeps more than this fraction of the nodes.
+     */
+    private static final double MIN_REDUCTION = 0.95;
+    private static final int MAX_LEVELS = 64;
+    /**
+     * Largest coarse node, relative to the average node of the coarsest level.
+     */
+    private static final double MAX_NODE_WEIGHT_FACTOR = 1.5;
+
+    private final Graph graph;
+    private final Config config;
+    private final Random rand;
+
+    public Multilevel(Graph graph, Config config) {
+        this(graph, config, RandNoGenerator.getRandom());
+    }
+
+    public Multilevel(Graph graph, Config config, Random rand) {
+        this.graph = graph;
+        this.config = config;
+        this.rand = rand;
+    }
+
+    public void run() throws IOException {
+        long start = System.nanoTime();
+        List<Graph> levels = new ArrayList<Graph>();
+        List<int[]> maps = new ArrayList<int[]>();
+        levels.add(graph);
+
+        int maxNodeWeight = (int) Math.max(1, Math.ceil(MAX_NODE_WEIGHT_FACTOR *
+                graph.getTotalNodeWeight() / config.getCoarsestSize()));
+        Graph fine = graph;
+        while (fine.size() > config.getCoarsestSize() && levels.size() < MAX_LEVELS) {
+            Coarsening level = Coarsening.coarsen(fine, config.getMatching(), maxNodeWeight, rand);
+            if (level.coarse.size() > MIN_REDUCTION * fine.size()) {
+                break;
+            }
+            levels.add(level.coarse);
+            maps.add(level.map);
+            fine = level.coarse;
+            logger.info("level " + (levels.size() - 1) + ": " + fine.size() + " nodes, " +
+                    fine.numArcs() / 2 + " edges");
+        }
+        logger.info("coarsened to " + levels.size() + " levels in " +
+                String.format("%.3f", (System.nanoTime() - start) / 1e9) + " s");
+
+        int coarsest = levels.size() - 1;
+        int[] colors = balancedColors(levels.get(coarsest), config.getNumPartitions());
+        long visits = 0;
+        int edgeCut = 0;
+        for (int l = coarsest; l >= 0; l--) {
+            Graph g;
+            if (l == 0) {
+                // the input graph keeps its initial colors, migrations are counted against them
+                g = graph;
+                for (int v = 0; v < colors.length; v++) {
+                    g.setColor(v, colors[v]);
+                }
+            } else {
+                g = levels.get(l).withColors(colors);
+            }
+
+            Config levelConfig = l == coarsest
+                    ? config
+                    : config.copy().setRounds(config.getRefineRounds()).setTemperature(1f);
+            Jabeja jabeja = new Jabeja(g, levelConfig, rand, l == 0 ? "_ML" : "_ML_L" + l);
+            if (l > 0) {
+                // the colors of a coarse level are not a partition of the input graph
+                jabeja.skipPartitionFile();
+            }
+            jabeja.startJabeja();
+            visits += jabeja.getMetrics().getNodeVisits();
+            edgeCut = jabeja.getEdgeCut();
+            logger.info("level " + l + " done, edge cut: " + edgeCut);
+
+            if (l > 0) {
+                int[] map = maps.get(l - 1);
+                int[] finer = new int[map.length];
+                for (int v = 0; v < finer.length; v++) {
+                    finer[v] = g.getColor(map[v]);
+                }
+                colors = finer;
+            }
+        }
+
+        logger.info("multilevel finished in " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " s" +
+                ", edge cut: " + edgeCut +
+                ", node visits: " + visits +
+                ", a flat run of " + config.getRounds() + " rounds visits " + (long) graph.size() * config.getRounds());
+    }
+
+    /**
+     * Colors the nodes heaviest first, each with the currently lightest color.
+     */
+    static int[] balancedColors(Graph g, int numColors) {
+        int n = g.size();
+        long[] keys = new long[n];
+        for (int v = 0; v < n; v++) {
+            keys[v] = ((long) (Integer.MAX_VALUE - g.getNodeWeight(v)) << 32) | v;
+        }
+        Arrays.sort(keys);
+        long[] weights = new long[numColors];
+        int[] colors = new int[n];
+        for (long key : keys) {
+            int v = (int) key;
+            int lightest = 0;
+            for (int c = 1; c < numColors; c++) {
+                if (weights[c] < weights[lightest]) {
+                    lightest = c;
+                }
+            }
+            colors[v] = lightest;
+            weights[lightest] += g.getNodeWeight(v);
+        }
+        return colors;
+    }
+}
@@ -1,54 +1,62 @@
 package se.kth.jabeja;
 
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+
 import java.util.ArrayList;
 
+/**
+ * A view of a single node of a {@link Graph}. All state lives in the graph,
+ * so colors set through the view are visible to the graph and vice versa.
+ */
 public class Node {
 
-	private int id;
-	private int color;
-	private int initColor;
-	private ArrayList<Integer> neighbours;
+	private final Graph graph;
+	private final int index;
 
-	public Node(int id, int color) {
-		this.id = id;
-		this.color = color;
-		this.initColor = color;
-		this.neighbours = new ArrayList<Integer>();
+	public Node(Graph graph, int index) {
+		this.graph = graph;
+		this.index = index;
 	}
 
 	public Node(Node n){
-		this.id = n.getId();
-		this.color = n.getColor();
-		this.initColor = n.getInitColor();
-		this.neighbours = n.getNeighbours();
+		this.graph = n.graph;
+		this.index = n.index;
 	}
 
 	public void setColor(int color) {
-		this.color = color;
+		graph.setColor(index, color);
 	}
 
-	public void setNeighbours(ArrayList<Integer> neighbours) {
-		for (int id : neighbours)
-			this.neighbours.add(id);
+	/**
+	 * @return the dense index of the node in its graph
+	 */
+	public int getIndex() {
+		return this.index;
 	}
-	
 	public int getId() {
-		return this.id;
+		return graph.getId(index);
 	}
 	public int getColor() {
-		return this.color;
+		return graph.getColor(index);
 	}
 	public int getDegree() {
-		return this.neighbours.size();
+		return graph.getDegree(index);
 	}
 	public int getInitColor() {
-		return this.initColor;
+		return graph.getInitColor(index);
 	}
 	public ArrayList<Integer> getNeighbours() {
-		return this.neighbours;
+		IntArray offsets = graph.getOffsets();
+		IntArray adjacency = graph.getAdjacency();
+		ArrayList<Integer> neighbours = new ArrayList<Integer>(getDegree());
+		for (int i = offsets.get(index); i < offsets.get(index + 1); i++) {
+			neighbours.add(graph.getId(adjacency.get(i)));
+		}
+		return neighbours;
 	}
 	@Override
 	public String toString() {
-		return "id: " + id + ", color: " + color + ", neighbours: " + neighbours + "\n";
+		return "id: " + getId() + ", color: " + getColor() + ", neighbours: " + getNeighbours() + "\n";
 	}
 }
@@ -0,0 +1,96 @@
+package se.kth.jabeja;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the node visits of a round on a fork-join pool. The node range is
+ * split recursively into chunks. Every pool thread keeps one
+ * {@link RoundWorker}, whose generator is reseeded from the run seed, the
+ * round and the chunk start, so that sampling does not depend on
+ * scheduling.
+ */
+class ParallelRound {
+    /**
+     * Chunks per thread, so that work stealing can even out skewed degrees.
+     */
+    private static final int CHUNKS_PER_THREAD = 16;
+    private static final int MIN_CHUNK = 64;
+
+    private final Jabeja jabeja;
+    private final ForkJoinPool pool;
+    private final int numNodes;
+    private final int chunkSize;
+    private final long seed;
+    private final ThreadLocal<RoundWorker> workers = new ThreadLocal<RoundWorker>();
+
+    ParallelRound(Jabeja jabeja, int numNodes, int threads, long seed) {
+        this.jabeja = jabeja;
+        this.pool = new ForkJoinPool(threads);
+        this.numNodes = numNodes;
+        this.chunkSize = Math.max(MIN_CHUNK, numNodes / (threads * CHUNKS_PER_THREAD));
+        this.seed = seed;
+    }
+
+    /**
+     * Visits every node once and returns when all chunks are merged.
+     *
+     * @param round the round number, part of the chunk seeds
+     * @param T     temperature at the start of the round
+     */
+    void run(int round, float T) {
+        pool.invoke(new Chunk(round, T, null, 0, numNodes));
+    }
+
+    /**
+     * Visits the nodes nodes[0, count) once and returns when all chunks are merged.
+     */
+    void run(int round, float T, int[] nodes, int count) {
+        pool.invoke(new Chunk(round, T, nodes, 0, count));
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    private class Chunk extends RecursiveAction {
+        private final int round;
+        private final float T;
+        /**
+         * Nodes visited by the round, null for all nodes.
+         */
+        private final int[] nodes;
+        private final int from;
+        private final int to;
+
+        Chunk(int round, float T, int[] nodes, int from, int to) {
+            this.round = round;
+            this.T = T;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                RoundWorker worker = workers.get();
+                if (worker == null) {
+                    worker = jabeja.newConcurrentWorker(new Random());
+                    workers.set(worker);
+                }
+                worker.rand.setSeed(seed * 31 + (long) round * numNodes + from);
+                if (nodes == null) {
+                    jabeja.sampleAndSwap(worker, from, to, T);
+                } else {
+                    jabeja.sampleAndSwap(worker, nodes, from, to, T);
+                }
+                jabeja.merge(worker);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(round, T, nodes, from, mid), new Chunk(round, T, nodes, mid, to));
+            }
+        }
+    }
+}
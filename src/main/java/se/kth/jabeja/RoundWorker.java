@@ -0,0 +1,60 @@
+package se.kth.jabeja;
+
+import se.kth.jabeja.graph.EdgeCut;
+import se.kth.jabeja.graph.IntArray;
+import se.kth.jabeja.rand.DistinctSampler;
+
+import java.util.Random;
+
+/**
+ * State of one thread working through (a part of) a round: its random
+ * generator and sample buffers, its temperature and the changes it has not
+ * merged yet. Concurrent workers buffer their edge cut changes and swap
+ * counts and lock the neighbourhood of every swap; the sequential worker
+ * applies everything directly.
+ *
+ * Workers are reused from round to round, so visiting a node allocates
+ * nothing.
+ */
+class RoundWorker {
+    final Random rand;
+    final DistinctSampler sampler;
+    /**
+     * The sampler buffer, as the candidates of findPartner.
+     */
+    final IntArray sample;
+    final boolean concurrent;
+    final EdgeCut.Delta cutDelta;
+    int[] lockScratch;
+    float Tr;
+    int swaps;
+    // counts for the metrics, added to them on merge
+    long candidates;
+    long localHits;
+    long randomHits;
+    long rejects;
+
+    /**
+     * Creates the worker of the sequential algorithm.
+     */
+    RoundWorker(Random rand, int numNodes, int maxSample) {
+        this.rand = rand;
+        this.sampler = new DistinctSampler(rand, numNodes, maxSample);
+        this.sample = IntArray.wrap(sampler.buffer());
+        this.concurrent = false;
+        this.cutDelta = null;
+        this.lockScratch = null;
+    }
+
+    /**
+     * Creates a worker that runs concurrently with others.
+     */
+    RoundWorker(Random rand, int numNodes, int maxSample, EdgeCut.Delta cutDelta, int[] lockScratch) {
+        this.rand = rand;
+        this.sampler = new DistinctSampler(rand, numNodes, maxSample);
+        this.sample = IntArray.wrap(sampler.buffer());
+        this.concurrent = true;
+        this.cutDelta = cutDelta;
+        this.lockScratch = lockScratch;
+    }
+}
@@ -0,0 +1,218 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.FileIO;
+import se.kth.jabeja.rand.LcgRandom;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several variants of a config on one loaded graph. The topology is
+ * shared, every variant gets its own copy of the initial colors and its
+ * own generator seeded with its seed, so a variant gives the same result
+ * as a single run with the same parameters and a deterministic initial
+ * color policy.
+ *
+ * Variants run concurrently, each writes its own result file, and a
+ * summary ranked by final edge cut and wall time is written to the output
+ * directory.
+ */
+public class Sweep {
+    final static Logger logger = Logger.getLogger(Sweep.class);
+
+    public static final String SUMMARY_FILE = "sweep_summary.txt";
+
+    private final Graph graph;
+    private final List<Config> variants;
+    private final int poolSize;
+
+    /**
+     * @param graph    the loaded graph, its initial colors are the start of every variant
+     * @param variants configs to run
+     * @param poolSize number of variants running at the same time
+     */
+    public Sweep(Graph graph, List<Config> variants, int poolSize) {
+        this.graph = graph;
+        this.variants = variants;
+        this.poolSize = Math.max(1, Math.min(poolSize, variants.size()));
+    }
+
+    /**
+     * The grid of all combinations of the given values. A null array keeps
+     * the value of the base config.
+     */
+    public static List<Config> grid(Config base, float[] temperatures, float[] deltas, float[] alphas,
+                                    int[] uniformRandSampleSizes, int[] randNeighborsSampleSizes) {
+        List<Config> grid = new ArrayList<Config>();
+        grid.add(base.copy());
+        if (temperatures != null) {
+            List<Config> next = new ArrayList<Config>();
+            for (Config c : grid) {
+                for (float v : temperatures) {
+                    next.add(c.copy().setTemperature(v));
+                }
+            }
+            grid = next;
+        }
+        if (deltas != null) {
+            List<Config> next = new ArrayList<Config>();
+            for (Config c : grid) {
+                for (float v : deltas) {
+                    next.add(c.copy().setDelta(v));
+                }
+            }
+            grid = next;
+        }
+        if (alphas != null) {
+            List<Config> next = new ArrayList<Config>();
+            for (Config c : grid) {
+                for (float v : alphas) {
+                    next.add(c.copy().setAlpha(v));
+                }
+            }
+            grid = next;
+        }
+        if (uniformRandSampleSizes != null) {
+            List<Config> next = new ArrayList<Config>();
+            for (Config c : grid) {
+                for (int v : uniformRandSampleSizes) {
+                    next.add(c.copy().setUniformRandSampleSize(v));
+                }
+            }
+            grid = next;
+        }
+        if (randNeighborsSampleSizes != null) {
+            List<Config> next = new ArrayList<Config>();
+            for (Config c : grid) {
+                for (int v : randNeighborsSampleSizes) {
+                    next.add(c.copy().setRandNeighborsSampleSize(v));
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+    /**
+     * Runs all variants and writes the summary.
+     *
+     * @return the results, best first
+     */
+    public List<Result> run() throws IOException {
+        logger.info("Sweeping " + variants.size() + " variants, " + poolSize + " at a time");
+        // created up front, so the variants do not race to create it
+        File outputDir = new File(variants.get(0).getOutputDir());
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create the output directory");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        List<Result> results = new ArrayList<Result>();
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final Config variant : variants) {
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() throws IOException {
+                        return runVariant(variant);
+                    }
+                }));
+            }
+            for (Future<Result> future : futures) {
+                results.add(get(future));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result a, Result b) {
+                if (a.edgeCut != b.edgeCut) {
+                    return Integer.compare(a.edgeCut, b.edgeCut);
+                }
+                return Long.compare(a.wallNanos, b.wallNanos);
+            }
+        });
+        writeSummary(results);
+        return results;
+    }
+
+    private Result runVariant(Config variant) throws IOException {
+        Jabeja jabeja = new Jabeja(graph.copy(), variant, new LcgRandom(variant.getSeed()));
+        long start = System.nanoTime();
+        jabeja.startJabeja();
+        long wallNanos = System.nanoTime() - start;
+        return new Result(variant, jabeja.getEdgeCut(), jabeja.getNumberOfSwaps(), jabeja.getMigrations(), wallNanos);
+    }
+
+    private void writeSummary(List<Result> results) throws IOException {
+        String delimiter = "\t\t";
+        StringBuilder sb = new StringBuilder("# Variants ranked by final edge cut, then wall time.\n\n");
+        sb.append("Rank").append(delimiter).append("Edge-Cut").append(delimiter).append("Wall-s")
+                .append(delimiter).append("Swaps").append(delimiter).append("Migrations")
+                .append(delimiter).append("T").append(delimiter).append("D").append(delimiter).append("A")
+                .append(delimiter).append("URSS").append(delimiter).append("RNSS").append("\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            sb.append(i + 1).append(delimiter).append(r.edgeCut)
+                    .append(delimiter).append(String.format("%.3f", r.wallNanos / 1e9))
+                    .append(delimiter).append(r.swaps).append(delimiter).append(r.migrations)
+                    .append(delimiter).append(r.config.getTemperature())
+                    .append(delimiter).append(r.config.getDelta())
+                    .append(delimiter).append(r.config.getAlpha())
+                    .append(delimiter).append(r.config.getUniformRandomSampleSize())
+                    .append(delimiter).append(r.config.getRandomNeighborSampleSize()).append("\n");
+        }
+        String summary = sb.toString();
+        logger.info("Sweep summary\n" + summary);
+        FileIO.write(summary, variants.get(0).getOutputDir() + File.separator + SUMMARY_FILE);
+    }
+
+    private static Result get(Future<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a variant", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Final state of one variant.
+     */
+    public static class Result {
+        public final Config config;
+        public final int edgeCut;
+        public final int swaps;
+        public final int migrations;
+        public final long wallNanos;
+
+        Result(Config config, int edgeCut, int swaps, int migrations, long wallNanos) {
+            this.config = config;
+            this.edgeCut = edgeCut;
+            this.swaps = swaps;
+            this.migrations = migrations;
+            this.wallNanos = wallNanos;
+        }
+    }
+}
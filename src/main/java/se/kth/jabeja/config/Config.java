@@ -13,12 +13,138 @@ public class Config {
   private GraphInitColorPolicy initColorPolicy;
   private NodeSelectionPolicy nodeSelectionPolicy;
   private Float alpha;
+  private Integer threads;
+  private OutputFormat outputFormat;
+  private Integer convergenceWindow;
+  private Float minSwapRate;
+  private Float timeBudget;
+  private Integer workers;
+  private Integer checkpointRounds;
+  private Float checkpointSeconds;
+  private Boolean resume;
+  private NodeOrdering nodeOrdering;
+  private NodeSchedule nodeSchedule;
+  private Float explorationProbability;
+  private Float imbalance;
+  private Boolean multilevel;
+  private Matching matching;
+  private Integer coarsestSize;
+  private Integer refineRounds;
+  private Boolean offHeap;
+  private String partitionFile;
+  private String updatesFile;
+  private Integer hops;
 
   public Config setAlpha(Float alpha) {
     this.alpha = alpha;
     return this;
   }
 
+  public Config setThreads(Integer threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  public Config setOutputFormat(OutputFormat outputFormat) {
+    this.outputFormat = outputFormat;
+    return this;
+  }
+
+  public Config setConvergenceWindow(Integer convergenceWindow) {
+    this.convergenceWindow = convergenceWindow;
+    return this;
+  }
+
+  public Config setMinSwapRate(Float minSwapRate) {
+    this.minSwapRate = minSwapRate;
+    return this;
+  }
+
+  public Config setTimeBudget(Float timeBudget) {
+    this.timeBudget = timeBudget;
+    return this;
+  }
+
+  public Config setWorkers(Integer workers) {
+    this.workers = workers;
+    return this;
+  }
+
+  public Config setCheckpointRounds(Integer checkpointRounds) {
+    this.checkpointRounds = checkpointRounds;
+    return this;
+  }
+
+  public Config setCheckpointSeconds(Float checkpointSeconds) {
+    this.checkpointSeconds = checkpointSeconds;
+    return this;
+  }
+
+  public Config setResume(Boolean resume) {
+    this.resume = resume;
+    return this;
+  }
+
+  public Config setNodeOrdering(NodeOrdering nodeOrdering) {
+    this.nodeOrdering = nodeOrdering;
+    return this;
+  }
+
+  public Config setNodeSchedule(NodeSchedule nodeSchedule) {
+    this.nodeSchedule = nodeSchedule;
+    return this;
+  }
+
+  public Config setExplorationProbability(Float explorationProbability) {
+    this.explorationProbability = explorationProbability;
+    return this;
+  }
+
+  public Config setImbalance(Float imbalance) {
+    this.imbalance = imbalance;
+    return this;
+  }
+
+  public Config setMultilevel(Boolean multilevel) {
+    this.multilevel = multilevel;
+    return this;
+  }
+
+  public Config setMatching(Matching matching) {
+    this.matching = matching;
+    return this;
+  }
+
+  public Config setCoarsestSize(Integer coarsestSize) {
+    this.coarsestSize = coarsestSize;
+    return this;
+  }
+
+  public Config setRefineRounds(Integer refineRounds) {
+    this.refineRounds = refineRounds;
+    return this;
+  }
+
+  public Config setOffHeap(Boolean offHeap) {
+    this.offHeap = offHeap;
+    return this;
+  }
+
+  public Config setPartitionFilePath(String partitionFile) {
+    this.partitionFile = partitionFile;
+    return this;
+  }
+
+  public Config setUpdatesFilePath(String updatesFile) {
+    this.updatesFile = updatesFile;
+    return this;
+  }
+
+  public Config setHops(Integer hops) {
+    this.hops = hops;
+    return this;
+  }
+
   public Config setGraphInitialColorPolicy(GraphInitColorPolicy policy) {
     this.initColorPolicy = policy;
     return this;
@@ -158,6 +284,246 @@ public class Config {
     return alpha;
   }
 
+  public Integer getThreads() {
+    if (threads == null) {
+      throw new NullPointerException("Threads is not set");
+    }
+    return threads;
+  }
+
+  public OutputFormat getOutputFormat() {
+    if (outputFormat == null) {
+      throw new NullPointerException("Output format is not set");
+    }
+    return outputFormat;
+  }
+
+  /**
+   * @return rounds without improvement of the edge cut after which a run stops, 0 for never
+   */
+  public Integer getConvergenceWindow() {
+    if (convergenceWindow == null) {
+      throw new NullPointerException("Convergence window is not set");
+    }
+    return convergenceWindow;
+  }
+
+  /**
+   * @return swaps per node and round below which a run stops once T is 1, 0 for never
+   */
+  public Float getMinSwapRate() {
+    if (minSwapRate == null) {
+      throw new NullPointerException("Min swap rate is not set");
+    }
+    return minSwapRate;
+  }
+
+  /**
+   * @return seconds after which a run stops, 0 for no limit
+   */
+  public Float getTimeBudget() {
+    if (timeBudget == null) {
+      throw new NullPointerException("Time budget is not set");
+    }
+    return timeBudget;
+  }
+
+  /**
+   * @return number of worker processes of a distributed run, 0 to run in this process
+   */
+  public Integer getWorkers() {
+    if (workers == null) {
+      throw new NullPointerException("Workers is not set");
+    }
+    return workers;
+  }
+
+  /**
+   * @return rounds between checkpoints, 0 for none
+   */
+  public Integer getCheckpointRounds() {
+    if (checkpointRounds == null) {
+      throw new NullPointerException("Checkpoint rounds is not set");
+    }
+    return checkpointRounds;
+  }
+
+  /**
+   * @return seconds between checkpoints, 0 for none
+   */
+  public Float getCheckpointSeconds() {
+    if (checkpointSeconds == null) {
+      throw new NullPointerException("Checkpoint seconds is not set");
+    }
+    return checkpointSeconds;
+  }
+
+  /**
+   * @return whether a run continues from its checkpoint
+   */
+  public Boolean getResume() {
+    if (resume == null) {
+      throw new NullPointerException("Resume is not set");
+    }
+    return resume;
+  }
+
+  public NodeOrdering getNodeOrdering() {
+    if (nodeOrdering == null) {
+      throw new NullPointerException("Node ordering is not set");
+    }
+    return nodeOrdering;
+  }
+
+  public NodeSchedule getNodeSchedule() {
+    if (nodeSchedule == null) {
+      throw new NullPointerException("Node schedule is not set");
+    }
+    return nodeSchedule;
+  }
+
+  /**
+   * @return probability that {@link NodeSchedule#ACTIVE} visits a node none
+   * of its rules picked
+   */
+  public Float getExplorationProbability() {
+    if (explorationProbability == null) {
+      throw new NullPointerException("Exploration probability is not set");
+    }
+    return explorationProbability;
+  }
+
+  /**
+   * @return how much heavier than the average a color may get, as a
+   * fraction of the average, on graphs with node weights
+   */
+  public Float getImbalance() {
+    if (imbalance == null) {
+      throw new NullPointerException("Imbalance is not set");
+    }
+    return imbalance;
+  }
+
+  /**
+   * @return whether to coarsen the graph, partition the coarsest level and
+   * refine the partition back level by level
+   */
+  public Boolean getMultilevel() {
+    if (multilevel == null) {
+      throw new NullPointerException("Multilevel is not set");
+    }
+    return multilevel;
+  }
+
+  public Matching getMatching() {
+    if (matching == null) {
+      throw new NullPointerException("Matching is not set");
+    }
+    return matching;
+  }
+
+  /**
+   * @return number of nodes at which coarsening stops
+   */
+  public Integer getCoarsestSize() {
+    if (coarsestSize == null) {
+      throw new NullPointerException("Coarsest size is not set");
+    }
+    return coarsestSize;
+  }
+
+  /**
+   * @return rounds run on every level finer than the coarsest
+   */
+  public Integer getRefineRounds() {
+    if (refineRounds == null) {
+      throw new NullPointerException("Refine rounds is not set");
+    }
+    return refineRounds;
+  }
+
+  /**
+   * @return whether the graph topology is mapped from its binary cache
+   * instead of being read onto the heap
+   */
+  public Boolean getOffHeap() {
+    if (offHeap == null) {
+      throw new NullPointerException("Off heap is not set");
+    }
+    return offHeap;
+  }
+
+  /**
+   * @return the partition an incremental run starts from
+   */
+  public String getPartitionFilePath() {
+    if (partitionFile == null) {
+      throw new NullPointerException("Partition file path is not set");
+    }
+    return partitionFile;
+  }
+
+  /**
+   * @return the updates an incremental run applies to the graph
+   */
+  public String getUpdatesFilePath() {
+    if (updatesFile == null) {
+      throw new NullPointerException("Updates file path is not set");
+    }
+    return updatesFile;
+  }
+
+  /**
+   * @return how far from the changed nodes an incremental run visits nodes
+   */
+  public Integer getHops() {
+    if (hops == null) {
+      throw new NullPointerException("Hops is not set");
+    }
+    return hops;
+  }
+
+  /**
+   * @return a config with the same values, to be changed independently
+   */
+  public Config copy() {
+    Config c = new Config();
+    c.numPartitions = numPartitions;
+    c.rounds = rounds;
+    c.randomNeighborsSampleSize = randomNeighborsSampleSize;
+    c.temperature = temperature;
+    c.delta = delta;
+    c.seed = seed;
+    c.uniformRandomSampleSize = uniformRandomSampleSize;
+    c.graphFile = graphFile;
+    c.outputDir = outputDir;
+    c.initColorPolicy = initColorPolicy;
+    c.nodeSelectionPolicy = nodeSelectionPolicy;
+    c.alpha = alpha;
+    c.threads = threads;
+    c.outputFormat = outputFormat;
+    c.convergenceWindow = convergenceWindow;
+    c.minSwapRate = minSwapRate;
+    c.timeBudget = timeBudget;
+    c.workers = workers;
+    c.checkpointRounds = checkpointRounds;
+    c.checkpointSeconds = checkpointSeconds;
+    c.resume = resume;
+    c.nodeOrdering = nodeOrdering;
+    c.nodeSchedule = nodeSchedule;
+    c.explorationProbability = explorationProbability;
+    c.imbalance = imbalance;
+    c.multilevel = multilevel;
+    c.matching = matching;
+    c.coarsestSize = coarsestSize;
+    c.refineRounds = refineRounds;
+    c.offHeap = offHeap;
+    c.partitionFile = partitionFile;
+    c.updatesFile = updatesFile;
+    c.hops = hops;
+    return c;
+  }
+
   public Config createJabejaConfig() {
     return new Config();
   }
@@ -0,0 +1,26 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the multilevel mode pairs up nodes when it coarsens the graph.
+ */
+public enum Matching {
+    /**
+     * Match every node with the unmatched neighbour it shares the heaviest edge with
+     */
+    HEAVY_EDGE("HEAVY_EDGE"),
+    /**
+     * Match every node with a random unmatched neighbour
+     */
+    RANDOM("RANDOM");
+
+    String name;
+
+    Matching(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
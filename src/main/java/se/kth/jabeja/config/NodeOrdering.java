@@ -0,0 +1,41 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the nodes are renumbered before partitioning, so that neighbours,
+ * and so the colors read by the hot loop, sit close together in memory.
+ */
+public enum NodeOrdering {
+    /**
+     * Keep the order of the input file
+     */
+    NONE("NONE"),
+    /**
+     * Breadth first search order
+     */
+    BFS("BFS"),
+    /**
+     * Reverse Cuthill-McKee, a breadth first search visiting low degree
+     * neighbours first, reversed
+     */
+    RCM("RCM"),
+    /**
+     * Descending degree, so the hubs are packed together
+     */
+    DEGREE("DEGREE"),
+    /**
+     * Greedy Gorder: the next node is the one sharing the most neighbours
+     * and edges with a window of the last placed nodes
+     */
+    GORDER("GORDER");
+
+    String name;
+
+    NodeOrdering(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,28 @@
+package se.kth.jabeja.config;
+
+/**
+ * Which nodes a round visits.
+ */
+public enum NodeSchedule {
+    /**
+     * Every node, every round
+     */
+    FULL("FULL"),
+    /**
+     * Only the nodes that may have a partner: nodes that changed color or
+     * have a neighbour that did, nodes on a partition boundary, and a random
+     * fraction of the others
+     */
+    ACTIVE("ACTIVE");
+
+    String name;
+
+    NodeSchedule(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,23 @@
+package se.kth.jabeja.config;
+
+/**
+ * Format of the per round result file. TSV is the one graph.gnuplot plots.
+ */
+public enum OutputFormat {
+    TSV("TSV", ".txt"),
+    JSON("JSON", ".jsonl"),
+    BINARY("BINARY", ".bin");
+    String name;
+    String extension;
+    OutputFormat(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+    public String getExtension() {
+        return extension;
+    }
+    @Override
+    public String toString() {
+        return name;
+    }
+}
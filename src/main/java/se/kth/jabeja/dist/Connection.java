@@ -0,0 +1,146 @@
+package se.kth.jabeja.dist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A socket carrying messages of ints, each prefixed by its length. Counts
+ * what it sends, so the communication of a round can be measured.
+ *
+ * A connection is either read directly with {@link #read()}, or, after
+ * {@link #startReceiving()}, by a background thread that queues incoming
+ * messages. Peers that send to each other at the same time use the latter,
+ * so neither blocks on a full socket buffer while the other is writing.
+ */
+class Connection implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int[] CLOSED = new int[0];
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private BlockingQueue<int[]> received;
+    private volatile IOException failure;
+    private long bytesSent;
+    private long messagesSent;
+
+    Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+    }
+
+    /**
+     * Stream for the handshake, before any message is sent.
+     */
+    DataInputStream in() {
+        return in;
+    }
+
+    /**
+     * Stream for the handshake, before any message is sent. Flush it.
+     */
+    DataOutputStream out() {
+        return out;
+    }
+
+    void send(int... values) throws IOException {
+        send(values, values.length);
+    }
+
+    /**
+     * Sends values[0, length) as one message.
+     */
+    void send(int[] values, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+        out.flush();
+        bytesSent += 4L * (length + 1);
+        messagesSent++;
+    }
+
+    /**
+     * Reads the next message from the socket.
+     */
+    int[] read() throws IOException {
+        int length = in.readInt();
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Starts the thread that reads all further messages into a queue.
+     */
+    void startReceiving() {
+        received = new LinkedBlockingQueue<int[]>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        received.add(read());
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                    received.add(CLOSED);
+                }
+            }
+        }, "receiver-" + socket.getPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Takes the next message queued by the receiving thread.
+     */
+    int[] receive() throws IOException {
+        int[] message;
+        try {
+            message = received.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while receiving", e);
+        }
+        if (message == CLOSED) {
+            received.add(CLOSED);
+            throw failure instanceof EOFException ? new EOFException("Connection closed") : failure;
+        }
+        return message;
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    long getMessagesSent() {
+        return messagesSent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    static void putLong(int[] values, int i, long v) {
+        values[i] = (int) (v >>> 32);
+        values[i + 1] = (int) v;
+    }
+
+    static long getLong(int[] values, int i) {
+        return ((long) values[i] << 32) | (values[i + 1] & 0xFFFFFFFFL);
+    }
+}
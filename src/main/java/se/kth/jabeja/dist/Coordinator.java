@@ -0,0 +1,285 @@
+package se.kth.jabeja.dist;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.Jabeja;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.io.AsyncRoundWriter;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.io.RoundRecord;
+import se.kth.jabeja.io.RoundSink;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs JaBeJa on several worker processes on this machine. The nodes are
+ * split into contiguous ranges, one per {@link Worker}, and every worker
+ * only loads its own nodes and their neighbours.
+ *
+ * Rounds are bulk synchronous: the coordinator starts a round with the
+ * temperature, the workers swap, exchange boundary colors and report
+ * their share of the edge cut, and the coordinator decides, exactly like
+ * the single process simulated annealing, whether the round is kept or
+ * rolled back. It then cools down and reports the round, together with
+ * the bytes and messages the workers exchanged and the time they spent
+ * communicating. After the last round it collects the colors of all nodes
+ * and writes the partition.
+ */
+public class Coordinator {
+    final static Logger logger = Logger.getLogger(Coordinator.class);
+
+    private static final int ACCEPT_TIMEOUT_MILLIS = 60000;
+
+    private final Config config;
+    private final int numWorkers;
+    private final List<Process> processes = new ArrayList<Process>();
+    private Connection[] workers;
+
+    public Coordinator(Config config) {
+        this.config = config;
+        this.numWorkers = config.getWorkers();
+    }
+
+    public void run() throws IOException {
+        File outputDir = new File(config.getOutputDir());
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create the output directory");
+        }
+
+        int numNodes = Partition.readNumNodes(config.getGraphFilePath());
+        int[] starts = Partition.split(numNodes, numWorkers);
+        ServerSocket server = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress());
+        try {
+            startWorkers(server.getLocalPort(), outputDir);
+            connect(server, starts);
+            rounds();
+            writePartition(numNodes);
+        } finally {
+            server.close();
+            stopWorkers();
+        }
+    }
+
+    private void startWorkers(int port, File outputDir) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < numWorkers; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Worker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(port));
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File(outputDir, "worker-" + i + ".log"));
+            processes.add(builder.start());
+        }
+    }
+
+    /**
+     * Accepts the workers and sends every worker its nodes, the addresses
+     * of the others and the parameters of the run.
+     */
+    private void connect(ServerSocket server, int[] starts) throws IOException {
+        server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+        workers = new Connection[numWorkers];
+        int[] ports = new int[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Connection(server.accept());
+            ports[i] = workers[i].in().readInt();
+        }
+        for (int i = 0; i < numWorkers; i++) {
+            DataOutputStream out = workers[i].out();
+            out.writeInt(i);
+            out.writeInt(numWorkers);
+            for (int start : starts) {
+                out.writeInt(start);
+            }
+            for (int j = 0; j < numWorkers; j++) {
+                out.writeUTF(InetAddress.getLoopbackAddress().getHostAddress());
+                out.writeInt(ports[j]);
+            }
+            out.writeUTF(new File(config.getGraphFilePath()).getAbsolutePath());
+            out.writeInt(config.getNumPartitions());
+            out.writeUTF(config.getGraphInitialColorPolicy().name());
+            out.writeUTF(config.getNodeSelectionPolicy().name());
+            out.writeInt(config.getSeed());
+            out.writeFloat(config.getAlpha());
+            out.writeFloat(config.getDelta());
+            out.writeInt(config.getUniformRandomSampleSize());
+            out.flush();
+        }
+        logger.info("Started " + numWorkers + " workers on " + starts[numWorkers] + " nodes");
+    }
+
+    private void rounds() throws IOException {
+        Random rand = new Random(config.getSeed());
+        RoundStats stats = collect();
+        int edgeCut = stats.edgeCut();
+        int migrations = 0;
+        int numberOfSwaps = 0;
+        float T = config.getTemperature();
+        long lastBytes = stats.bytes;
+        long lastMessages = stats.messages;
+        long totalCommNanos = 0;
+        long totalComputeNanos = 0;
+
+        long start = System.nanoTime();
+        AsyncRoundWriter writer = new AsyncRoundWriter(RoundSink.open(config.getOutputFormat(),
+                new File(Jabeja.outputFilePath(config, "_W_" + numWorkers))));
+        try {
+            for (int round = 0; round < config.getRounds(); round++) {
+                for (Connection worker : workers) {
+                    worker.send(Worker.ROUND, round, Float.floatToIntBits(T));
+                }
+                stats = collect();
+                numberOfSwaps += stats.swaps;
+
+                float oldCost = edgeCut;
+                float newCost = stats.edgeCut();
+                boolean accept = newCost < oldCost || maybeMove(rand, oldCost, newCost, T);
+                for (Connection worker : workers) {
+                    worker.send(accept ? Worker.ACCEPT : Worker.REJECT);
+                }
+                if (accept) {
+                    edgeCut = stats.edgeCut();
+                    migrations = stats.migrations;
+                }
+                if (T > 1) {
+                    T *= 0.95;
+                }
+                if (T < 1) {
+                    T = 1;
+                }
+
+                // bytes of the round, the rollback exchange is counted in the next round
+                long bytes = stats.bytes - lastBytes;
+                long messages = stats.messages - lastMessages;
+                lastBytes = stats.bytes;
+                lastMessages = stats.messages;
+                totalCommNanos += stats.maxCommNanos;
+                totalComputeNanos += stats.maxComputeNanos;
+                logger.info("round: " + round +
+                        ", edge cut:" + edgeCut +
+                        ", swaps: " + numberOfSwaps +
+                        ", migrations: " + migrations +
+                        (accept ? "" : ", rejected") +
+                        ", sent: " + bytes + " bytes in " + messages + " messages" +
+                        ", compute: " + stats.maxComputeNanos / 1000 + " us" +
+                        ", communication: " + stats.maxCommNanos / 1000 + " us");
+                writer.write(new RoundRecord(round, edgeCut, numberOfSwaps, migrations, T, System.nanoTime() - start));
+            }
+        } finally {
+            writer.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int rounds = config.getRounds();
+        logger.info("finished " + rounds + " rounds in " + String.format("%.3f", seconds) + " s" +
+                ", rounds/sec: " + String.format("%.2f", rounds / seconds) +
+                ", workers: " + numWorkers +
+                ", sent: " + lastBytes + " bytes in " + lastMessages + " messages" +
+                " (" + (rounds > 0 ? lastBytes / rounds : 0) + " bytes/round)" +
+                ", communication: " + String.format("%.1f", 100.0 * totalCommNanos /
+                Math.max(1, totalCommNanos + totalComputeNanos)) + "% of the slowest workers' time");
+    }
+
+    /**
+     * Collects the final colors of the owned nodes from every worker and
+     * writes them as the partition of the run.
+     */
+    private void writePartition(int numNodes) throws IOException {
+        int[] colors = new int[numNodes];
+        int next = 0;
+        for (Connection worker : workers) {
+            worker.send(Worker.COLORS);
+            int[] message = worker.read();
+            if (message[0] != Worker.COLORS) {
+                throw new IOException("Unexpected message " + message[0]);
+            }
+            System.arraycopy(message, 1, colors, next, message.length - 1);
+            next += message.length - 1;
+        }
+        if (next != numNodes) {
+            throw new IOException("Workers sent the colors of " + next + " nodes, expected " + numNodes);
+        }
+        File partitionFile = Jabeja.partitionFile(config, "_W_" + numWorkers);
+        PartitionFile.write(colors, partitionFile);
+        logger.info("partition written to " + partitionFile);
+    }
+
+    private static boolean maybeMove(Random rand, float oldCost, float newCost, float T) {
+        float r = rand.nextFloat();
+        double p = Math.pow(Math.E, (oldCost - newCost) / T);
+        return r < p;
+    }
+
+    /**
+     * Reads the stats message of every worker.
+     */
+    private RoundStats collect() throws IOException {
+        RoundStats stats = new RoundStats();
+        for (Connection worker : workers) {
+            int[] message = worker.read();
+            if (message[0] != Worker.STATS) {
+                throw new IOException("Unexpected message " + message[0]);
+            }
+            stats.cutArcs += Connection.getLong(message, 1);
+            stats.swaps += message[3];
+            stats.migrations += message[4];
+            stats.bytes += Connection.getLong(message, 5);
+            stats.messages += Connection.getLong(message, 7);
+            stats.maxComputeNanos = Math.max(stats.maxComputeNanos, Connection.getLong(message, 9));
+            stats.maxCommNanos = Math.max(stats.maxCommNanos, Connection.getLong(message, 11));
+        }
+        return stats;
+    }
+
+    private void stopWorkers() {
+        if (workers != null) {
+            for (Connection worker : workers) {
+                if (worker == null) {
+                    continue;
+                }
+                try {
+                    worker.send(Worker.STOP);
+                    worker.close();
+                } catch (IOException e) {
+                    logger.warn("Unable to stop a worker: " + e.getMessage());
+                }
+            }
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Sums of the stats of all workers.
+     */
+    private static class RoundStats {
+        long cutArcs;
+        int swaps;
+        int migrations;
+        /**
+         * Totals since the start of the run.
+         */
+        long bytes;
+        long messages;
+        long maxComputeNanos;
+        long maxCommNanos;
+
+        int edgeCut() {
+            return (int) (cutArcs / 2);
+        }
+    }
+}
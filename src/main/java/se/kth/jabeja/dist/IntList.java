@@ -0,0 +1,26 @@
+package se.kth.jabeja.dist;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints, reused from round to round.
+ */
+class IntList {
+    int[] values = new int[64];
+    int size;
+
+    void add(int v) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = v;
+    }
+
+    int get(int i) {
+        return values[i];
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
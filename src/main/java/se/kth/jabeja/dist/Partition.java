@@ -0,0 +1,255 @@
+package se.kth.jabeja.dist;
+
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.io.GraphFormat;
+import se.kth.jabeja.io.GraphReader;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The part of a graph held by one worker: the nodes it owns, a contiguous
+ * range of dense indices, and the ghost nodes, i.e. the neighbours of owned
+ * nodes owned by other workers.
+ *
+ * Local indices are [0, numOwned) for the owned nodes, in global order,
+ * followed by the ghosts in ascending global order. A ghost's adjacency
+ * holds its owned neighbours only, so the local graph is symmetric and a
+ * ghost's color change updates the color degrees of the owned nodes.
+ */
+class Partition {
+    final int numNodes;
+    final int from;
+    final int numOwned;
+    /**
+     * Global indices of the ghosts, ascending.
+     */
+    final int[] ghosts;
+    final int[] offsets;
+    final int[] adjacency;
+    final int[] colors;
+    /**
+     * Workers that hold owned node v as a ghost are
+     * subscribers[subOffsets[v] .. subOffsets[v + 1] - 1].
+     */
+    final int[] subOffsets;
+    final int[] subscribers;
+
+    private Partition(int numNodes, int from, int numOwned, int[] ghosts, int[] offsets, int[] adjacency,
+                      int[] colors, int[] subOffsets, int[] subscribers) {
+        this.numNodes = numNodes;
+        this.from = from;
+        this.numOwned = numOwned;
+        this.ghosts = ghosts;
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+        this.colors = colors;
+        this.subOffsets = subOffsets;
+        this.subscribers = subscribers;
+    }
+
+    int size() {
+        return numOwned + ghosts.length;
+    }
+
+    boolean isOwned(int local) {
+        return local < numOwned;
+    }
+
+    /**
+     * @return local index of a global index that is owned or a ghost
+     */
+    int local(int global) {
+        if (global >= from && global < from + numOwned) {
+            return global - from;
+        }
+        int g = Arrays.binarySearch(ghosts, global);
+        if (g < 0) {
+            throw new IllegalArgumentException("Node " + global + " is not held by this worker");
+        }
+        return numOwned + g;
+    }
+
+    int global(int local) {
+        return local < numOwned ? from + local : ghosts[local - numOwned];
+    }
+
+    /**
+     * Streams a graph file and keeps the lines of the nodes [from, to).
+     * Initial colors are computed exactly as {@link GraphReader} computes
+     * them, ghosts are colored 0 until their owners send their colors.
+     *
+     * @param starts first node of every worker, and the number of nodes last
+     */
+    static Partition load(String graphFilePath, GraphInitColorPolicy colorPolicy, int numPartitions,
+                          int[] starts, int worker) throws IOException {
+        int from = starts[worker];
+        int to = starts[worker + 1];
+        int numOwned = to - from;
+        int[] offsets = new int[numOwned + 1];
+        int[] colors = new int[numOwned];
+        IntList neighbours = new IntList();
+        int numNodes = 0;
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(graphFilePath), StandardCharsets.UTF_8), 1 << 16)) {
+            String strLine;
+            while ((strLine = br.readLine()) != null) {
+                if (strLine.startsWith("%") || strLine.startsWith("#"))
+                    continue;
+                numNodes = parseHeader(graphFilePath, strLine);
+                break;
+            }
+
+            int id = 0;
+            int v = 0;
+            while (v < to && (strLine = br.readLine()) != null) {
+                id++;
+                if (strLine.startsWith("%") || strLine.startsWith("#")) {
+                    continue;
+                }
+                // every line draws its color, so random colors match a single process run
+                int color = GraphReader.getColor(numNodes, numPartitions, id, colorPolicy);
+                if (v >= from) {
+                    colors[v - from] = color;
+                    offsets[v - from] = neighbours.size;
+                    for (String part : strLine.split(GraphReader.DELIMETER)) {
+                        if (!part.equals(GraphReader.EMPTY_STRING)) {
+                            neighbours.add(Integer.parseInt(part) - 1);
+                        }
+                    }
+                }
+                v++;
+            }
+        }
+        offsets[numOwned] = neighbours.size;
+
+        // ghosts are the neighbours outside [from, to)
+        IntList outside = new IntList();
+        for (int i = 0; i < neighbours.size; i++) {
+            int w = neighbours.get(i);
+            if (w < from || w >= to) {
+                outside.add(w);
+            }
+        }
+        int[] ghosts = Arrays.copyOf(outside.values, outside.size);
+        Arrays.sort(ghosts);
+        int numGhosts = 0;
+        for (int i = 0; i < ghosts.length; i++) {
+            if (i == 0 || ghosts[i] != ghosts[i - 1]) {
+                ghosts[numGhosts++] = ghosts[i];
+            }
+        }
+        ghosts = Arrays.copyOf(ghosts, numGhosts);
+
+        // local adjacency, owned nodes first, then the reversed arcs into every ghost
+        int n = numOwned + numGhosts;
+        int[] localOffsets = new int[n + 1];
+        int[] adjacency = new int[neighbours.size + outside.size];
+        System.arraycopy(offsets, 0, localOffsets, 0, numOwned + 1);
+        int[] ghostDegree = new int[numGhosts];
+        for (int i = 0; i < neighbours.size; i++) {
+            int w = neighbours.get(i);
+            if (w >= from && w < to) {
+                adjacency[i] = w - from;
+            } else {
+                int g = Arrays.binarySearch(ghosts, w);
+                adjacency[i] = numOwned + g;
+                ghostDegree[g]++;
+            }
+        }
+        for (int g = 0; g < numGhosts; g++) {
+            localOffsets[numOwned + g + 1] = localOffsets[numOwned + g] + ghostDegree[g];
+        }
+        int[] fill = new int[numGhosts];
+        for (int u = 0; u < numOwned; u++) {
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int g = adjacency[i] - numOwned;
+                if (g >= 0) {
+                    adjacency[localOffsets[numOwned + g] + fill[g]++] = u;
+                }
+            }
+        }
+
+        // subscribers of an owned node are the owners of its ghost neighbours
+        int[] subOffsets = new int[numOwned + 1];
+        IntList subscribers = new IntList();
+        int[] seen = new int[starts.length - 1];
+        Arrays.fill(seen, -1);
+        for (int u = 0; u < numOwned; u++) {
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                if (adjacency[i] >= numOwned) {
+                    int owner = ownerOf(starts, ghosts[adjacency[i] - numOwned]);
+                    if (seen[owner] != u) {
+                        seen[owner] = u;
+                        subscribers.add(owner);
+                    }
+                }
+            }
+            subOffsets[u + 1] = subscribers.size;
+        }
+
+        return new Partition(numNodes, from, numOwned, ghosts, localOffsets, adjacency,
+                Arrays.copyOf(colors, n), subOffsets, Arrays.copyOf(subscribers.values, subscribers.size));
+    }
+
+    /**
+     * @return the number of nodes in the header of a graph file
+     */
+    static int readNumNodes(String graphFilePath) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(graphFilePath), StandardCharsets.UTF_8))) {
+            String strLine;
+            while ((strLine = br.readLine()) != null) {
+                if (strLine.startsWith("%") || strLine.startsWith("#"))
+                    continue;
+                return parseHeader(graphFilePath, strLine);
+            }
+        }
+        throw new IOException(graphFilePath + " has no header");
+    }
+
+    /**
+     * @return the number of nodes in a header line
+     * @throws IOException if the file has weights, which workers do not read
+     */
+    private static int parseHeader(String graphFilePath, String header) throws IOException {
+        String[] parts = header.split(GraphReader.DELIMETER);
+        if (!GraphFormat.parse(parts).isPlain()) {
+            throw new IOException(graphFilePath + " has weights, workers only partition unweighted graphs");
+        }
+        return Integer.parseInt(parts[0]);
+    }
+
+    /**
+     * @return the worker owning a global index
+     */
+    static int ownerOf(int[] starts, int global) {
+        int i = Arrays.binarySearch(starts, global);
+        if (i >= 0) {
+            // skip workers owning no nodes
+            while (i + 1 < starts.length && starts[i + 1] == global) {
+                i++;
+            }
+            return i;
+        }
+        return -i - 2;
+    }
+
+    /**
+     * Splits the nodes into contiguous, equally sized ranges.
+     *
+     * @return first node of every worker, and the number of nodes last
+     */
+    static int[] split(int numNodes, int workers) {
+        int[] starts = new int[workers + 1];
+        for (int i = 0; i <= workers; i++) {
+            starts[i] = (int) ((long) numNodes * i / workers);
+        }
+        return starts;
+    }
+}
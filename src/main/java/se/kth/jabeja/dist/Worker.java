@@ -0,0 +1,523 @@
+package se.kth.jabeja.dist;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.DegreePowers;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.graph.ColorDegrees;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.DistinctSampler;
+import se.kth.jabeja.rand.RandNoGenerator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A worker process of a distributed run, see {@link Coordinator}. It owns
+ * a contiguous range of nodes and runs sample and swap on them.
+ *
+ * Partners are picked among owned nodes exactly like {@link se.kth.jabeja.Jabeja}
+ * does. When no owned neighbour improves a node, the worker may propose a
+ * swap to its best ghost neighbour; the owner of the ghost decides with its
+ * exact color degrees and answers. Proposing nodes and proposed-to nodes
+ * take part in one handshake per round at most. After the handshakes,
+ * the colors of changed boundary nodes are sent to the workers holding
+ * them as ghosts.
+ *
+ * Uniform random samples are drawn among the owned nodes only.
+ */
+public class Worker {
+    final static Logger logger = Logger.getLogger(Worker.class);
+
+    static final int ROUND = 1;
+    static final int ACCEPT = 2;
+    static final int REJECT = 3;
+    static final int STOP = 4;
+    static final int STATS = 5;
+    static final int COLORS = 6;
+    /**
+     * Ints per swap proposal: p, q, color of p, color of q, d_p(color p), d_p(color q), Tr.
+     */
+    private static final int PROPOSAL_INTS = 7;
+
+    private final Connection coordinator;
+    private int id;
+    private int[] starts;
+    private Connection[] peers;
+    private Partition part;
+    private int[] colors;
+    private int[] initColors;
+    private ColorDegrees degrees;
+    private DegreePowers powers;
+    private NodeSelectionPolicy selectionPolicy;
+    private float delta;
+    private int uniformRandomSampleSize;
+    private DistinctSampler sampler;
+
+    private float Tr;
+    private int swaps;
+    private boolean[] pending;
+    private final IntList pendingNodes = new IntList();
+    private boolean[] dirty;
+    private final IntList dirtyNodes = new IntList();
+    /**
+     * Pairs of (owned node, old color) changed in the current round.
+     */
+    private final IntList journal = new IntList();
+    private IntList[] outgoing;
+    private long commNanos;
+
+    private Worker(Connection coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * @param args host and port of the coordinator
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: Worker {coordinator-host} {coordinator-port}");
+            System.exit(-1);
+        }
+        Worker worker = new Worker(new Connection(new Socket(args[0], Integer.parseInt(args[1]))));
+        try {
+            worker.run();
+        } finally {
+            worker.close();
+        }
+    }
+
+    private void run() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            DataOutputStream out = coordinator.out();
+            out.writeInt(server.getLocalPort());
+            out.flush();
+            setUp(server);
+        } finally {
+            server.close();
+        }
+
+        while (true) {
+            int[] message = coordinator.read();
+            if (message[0] == STOP) {
+                logger.info("Worker " + id + " stopped");
+                return;
+            }
+            if (message[0] == COLORS) {
+                sendColors();
+                continue;
+            }
+            if (message[0] != ROUND) {
+                throw new IOException("Unexpected message " + message[0]);
+            }
+            runRound(Float.intBitsToFloat(message[2]));
+
+            int decision = coordinator.read()[0];
+            if (decision == REJECT) {
+                rollback();
+                exchangeColors();
+            }
+            journal.clear();
+        }
+    }
+
+    /**
+     * Reads the assignment from the coordinator, loads the owned part of
+     * the graph, connects to the other workers and learns the initial
+     * colors of the ghosts.
+     */
+    private void setUp(ServerSocket server) throws IOException {
+        DataInputStream in = coordinator.in();
+        id = in.readInt();
+        int numWorkers = in.readInt();
+        starts = new int[numWorkers + 1];
+        for (int i = 0; i <= numWorkers; i++) {
+            starts[i] = in.readInt();
+        }
+        String[] hosts = new String[numWorkers];
+        int[] ports = new int[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            hosts[i] = in.readUTF();
+            ports[i] = in.readInt();
+        }
+        String graphFilePath = in.readUTF();
+        int numPartitions = in.readInt();
+        GraphInitColorPolicy colorPolicy = GraphInitColorPolicy.valueOf(in.readUTF());
+        selectionPolicy = NodeSelectionPolicy.valueOf(in.readUTF());
+        int seed = in.readInt();
+        float alpha = in.readFloat();
+        delta = in.readFloat();
+        uniformRandomSampleSize = in.readInt();
+
+        RandNoGenerator.setSeed(seed);
+        long start = System.nanoTime();
+        part = Partition.load(graphFilePath, colorPolicy, numPartitions, starts, id);
+        colors = part.colors;
+        initColors = Arrays.copyOf(colors, part.numOwned);
+        logger.info("Worker " + id + " owns nodes [" + part.from + ", " + (part.from + part.numOwned) + "), " +
+                part.ghosts.length + " ghosts, " + part.adjacency.length + " arcs, loaded in " +
+                (System.nanoTime() - start) / 1000000 + " ms");
+
+        // lower ids connect to higher ones
+        peers = new Connection[numWorkers];
+        for (int j = 0; j < id; j++) {
+            Connection peer = new Connection(new Socket(hosts[j], ports[j]));
+            peer.out().writeInt(id);
+            peer.out().flush();
+            peers[j] = peer;
+        }
+        for (int j = id + 1; j < numWorkers; j++) {
+            Connection peer = new Connection(server.accept());
+            peers[peer.in().readInt()] = peer;
+        }
+        outgoing = new IntList[numWorkers];
+        for (int j = 0; j < numWorkers; j++) {
+            outgoing[j] = new IntList();
+            if (peers[j] != null) {
+                peers[j].startReceiving();
+            }
+        }
+
+        pending = new boolean[part.size()];
+        dirty = new boolean[part.numOwned];
+        for (int v = 0; v < part.numOwned; v++) {
+            markDirty(v);
+        }
+        exchangeColors();
+
+        Graph graph = new Graph(part.offsets, part.adjacency, colors);
+        degrees = ColorDegrees.create(graph, numPartitions);
+        int maxDegree = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            maxDegree = Math.max(maxDegree, graph.getDegree(v));
+        }
+        powers = DegreePowers.of(alpha, maxDegree);
+        Random rand = new Random(seed * 31L + id);
+        sampler = new DistinctSampler(rand, Math.max(part.numOwned, 1), uniformRandomSampleSize);
+        sendStats(0);
+    }
+
+    private void runRound(float T) throws IOException {
+        long start = System.nanoTime();
+        commNanos = 0;
+        swaps = 0;
+        Tr = Math.max(1, T - part.from * delta);
+        for (int p = 0; p < part.numOwned; p++) {
+            sampleAndSwap(p);
+        }
+        exchangeProposals();
+        exchangeColors();
+        sendStats(System.nanoTime() - start - commNanos);
+    }
+
+    private void sampleAndSwap(int p) {
+        if (!pending[p]) {
+            int q = -1;
+            if (selectionPolicy == NodeSelectionPolicy.HYBRID || selectionPolicy == NodeSelectionPolicy.LOCAL) {
+                q = findPartner(p, part.adjacency, part.offsets[p], part.offsets[p + 1]);
+                if (q == -1 && propose(p)) {
+                    q = p;
+                }
+            }
+            if (q == -1 && (selectionPolicy == NodeSelectionPolicy.HYBRID
+                    || selectionPolicy == NodeSelectionPolicy.RANDOM)) {
+                int count = sampler.sample(part.numOwned, uniformRandomSampleSize, p);
+                q = findPartner(p, sampler.buffer(), 0, count);
+            }
+            if (q != -1 && q != p) {
+                swapColors(p, q);
+            }
+        }
+
+        Tr -= delta;
+        if (Tr < 1) {
+            Tr = 1;
+        }
+    }
+
+    /**
+     * Picks the best owned, not pending partner for p among nodes[from, to).
+     */
+    private int findPartner(int p, int[] nodes, int from, int to) {
+        int bestPartner = -1;
+        double highestBenefit = 0;
+
+        int pColor = colors[p];
+        double oldP = powers.get(degrees.get(p, pColor));
+
+        for (int i = from; i < to; i++) {
+            int q = nodes[i];
+            if (!part.isOwned(q) || pending[q]) {
+                continue;
+            }
+            int qColor = colors[q];
+
+            double old = oldP + powers.get(degrees.get(q, qColor));
+            double newV = powers.get(degrees.get(p, qColor)) + powers.get(degrees.get(q, pColor));
+
+            if (newV * Tr > old && newV > highestBenefit) {
+                bestPartner = q;
+                highestBenefit = newV;
+            }
+        }
+
+        return bestPartner;
+    }
+
+    private void swapColors(int p, int q) {
+        int dpq = degrees.get(p, colors[q]);
+        int dpp = degrees.get(p, colors[p]);
+        int dqp = degrees.get(q, colors[p]);
+        int dqq = degrees.get(q, colors[q]);
+        double c1 = powers.get(dpq) + powers.get(dqp);
+        double c2 = powers.get(dpp) + powers.get(dqq);
+        if (c1 * Tr > c2) {
+            int old = colors[p];
+            recolor(p, colors[q]);
+            recolor(q, old);
+            swaps++;
+        }
+    }
+
+    /**
+     * Proposes a swap of p with the ghost neighbour whose color p has most
+     * neighbours of, if p would gain from it.
+     *
+     * @return whether a proposal was queued
+     */
+    private boolean propose(int p) {
+        int pColor = colors[p];
+        int dpp = degrees.get(p, pColor);
+        double oldP = powers.get(dpp);
+        int best = -1;
+        double bestBenefit = 0;
+        for (int i = part.offsets[p]; i < part.offsets[p + 1]; i++) {
+            int g = part.adjacency[i];
+            if (part.isOwned(g) || colors[g] == pColor) {
+                continue;
+            }
+            double benefit = powers.get(degrees.get(p, colors[g]));
+            if (benefit * Tr > oldP && benefit > bestBenefit) {
+                best = g;
+                bestBenefit = benefit;
+            }
+        }
+        if (best == -1) {
+            return false;
+        }
+        IntList out = outgoing[Partition.ownerOf(starts, part.global(best))];
+        out.add(part.global(p));
+        out.add(part.global(best));
+        out.add(pColor);
+        out.add(colors[best]);
+        out.add(dpp);
+        out.add(degrees.get(p, colors[best]));
+        out.add(Float.floatToIntBits(Tr));
+        setPending(p);
+        return true;
+    }
+
+    /**
+     * Sends the proposals, decides on the ones received and applies the
+     * accepted ones of both sides.
+     */
+    private void exchangeProposals() throws IOException {
+        long start = System.nanoTime();
+        int[][] sent = new int[peers.length][];
+        for (int j = 0; j < peers.length; j++) {
+            if (peers[j] != null) {
+                sent[j] = Arrays.copyOf(outgoing[j].values, outgoing[j].size);
+                peers[j].send(outgoing[j].values, outgoing[j].size);
+                outgoing[j].clear();
+            }
+        }
+        for (int j = 0; j < peers.length; j++) {
+            if (peers[j] != null) {
+                int[] proposals = peers[j].receive();
+                int[] answers = new int[proposals.length / PROPOSAL_INTS];
+                for (int i = 0; i < answers.length; i++) {
+                    answers[i] = decide(proposals, i * PROPOSAL_INTS) ? 1 : 0;
+                }
+                peers[j].send(answers);
+            }
+        }
+        for (int j = 0; j < peers.length; j++) {
+            if (peers[j] != null) {
+                int[] answers = peers[j].receive();
+                for (int i = 0; i < answers.length; i++) {
+                    if (answers[i] == 1) {
+                        int o = i * PROPOSAL_INTS;
+                        recolor(part.local(sent[j][o]), sent[j][o + 3]);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < pendingNodes.size; i++) {
+            pending[pendingNodes.get(i)] = false;
+        }
+        pendingNodes.clear();
+        commNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Decides on a proposal to swap an owned node q with a ghost p.
+     */
+    private boolean decide(int[] proposal, int o) {
+        int q = part.local(proposal[o + 1]);
+        int pColor = proposal[o + 2];
+        int qColor = proposal[o + 3];
+        if (pending[q] || colors[q] != qColor) {
+            return false;
+        }
+        double c1 = powers.get(proposal[o + 5]) + powers.get(degrees.get(q, pColor));
+        double c2 = powers.get(proposal[o + 4]) + powers.get(degrees.get(q, qColor));
+        if (c1 * Float.intBitsToFloat(proposal[o + 6]) > c2) {
+            recolor(q, pColor);
+            setPending(q);
+            swaps++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends the colors of the changed boundary nodes to the workers that
+     * hold them as ghosts and applies the colors received.
+     */
+    private void exchangeColors() throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < dirtyNodes.size; i++) {
+            int v = dirtyNodes.get(i);
+            dirty[v] = false;
+            for (int s = part.subOffsets[v]; s < part.subOffsets[v + 1]; s++) {
+                IntList out = outgoing[part.subscribers[s]];
+                out.add(part.global(v));
+                out.add(colors[v]);
+            }
+        }
+        dirtyNodes.clear();
+        for (int j = 0; j < peers.length; j++) {
+            if (peers[j] != null) {
+                peers[j].send(outgoing[j].values, outgoing[j].size);
+                outgoing[j].clear();
+            }
+        }
+        for (int j = 0; j < peers.length; j++) {
+            if (peers[j] != null) {
+                int[] updates = peers[j].receive();
+                for (int i = 0; i < updates.length; i += 2) {
+                    int g = part.local(updates[i]);
+                    if (colors[g] != updates[i + 1]) {
+                        recolor(g, updates[i + 1]);
+                    }
+                }
+            }
+        }
+        commNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Sets the color of a local node, journaling owned nodes and marking
+     * changed boundary nodes for the next color exchange.
+     */
+    private void recolor(int v, int color) {
+        int old = colors[v];
+        colors[v] = color;
+        if (degrees != null) {
+            degrees.recolor(v, old, color);
+        }
+        if (part.isOwned(v)) {
+            journal.add(v);
+            journal.add(old);
+            markDirty(v);
+        }
+    }
+
+    private void rollback() {
+        for (int i = journal.size - 2; i >= 0; i -= 2) {
+            int v = journal.get(i);
+            int old = colors[v];
+            colors[v] = journal.get(i + 1);
+            degrees.recolor(v, old, colors[v]);
+            markDirty(v);
+        }
+        journal.clear();
+    }
+
+    private void markDirty(int v) {
+        if (!dirty[v] && part.subOffsets[v + 1] > part.subOffsets[v]) {
+            dirty[v] = true;
+            dirtyNodes.add(v);
+        }
+    }
+
+    private void setPending(int v) {
+        pending[v] = true;
+        pendingNodes.add(v);
+    }
+
+    /**
+     * Sends the colors of the owned nodes, in global order.
+     */
+    private void sendColors() throws IOException {
+        int[] message = new int[part.numOwned + 1];
+        message[0] = COLORS;
+        System.arraycopy(colors, 0, message, 1, part.numOwned);
+        coordinator.send(message);
+    }
+
+    /**
+     * Sends the cut arcs of the owned nodes, swaps, migrations and the
+     * communication of the round to the coordinator.
+     */
+    private void sendStats(long computeNanos) throws IOException {
+        long cutArcs = 0;
+        int migrations = 0;
+        for (int v = 0; v < part.numOwned; v++) {
+            int color = colors[v];
+            for (int i = part.offsets[v]; i < part.offsets[v + 1]; i++) {
+                if (colors[part.adjacency[i]] != color) {
+                    cutArcs++;
+                }
+            }
+            if (color != initColors[v]) {
+                migrations++;
+            }
+        }
+        long bytes = 0;
+        long messages = 0;
+        for (Connection peer : peers) {
+            if (peer != null) {
+                bytes += peer.getBytesSent();
+                messages += peer.getMessagesSent();
+            }
+        }
+        int[] stats = new int[13];
+        stats[0] = STATS;
+        Connection.putLong(stats, 1, cutArcs);
+        stats[3] = swaps;
+        stats[4] = migrations;
+        Connection.putLong(stats, 5, bytes);
+        Connection.putLong(stats, 7, messages);
+        Connection.putLong(stats, 9, computeNanos);
+        Connection.putLong(stats, 11, commNanos);
+        coordinator.send(stats);
+    }
+
+    private void close() throws IOException {
+        if (peers != null) {
+            for (Connection peer : peers) {
+                if (peer != null) {
+                    peer.close();
+                }
+            }
+        }
+        coordinator.close();
+    }
+}
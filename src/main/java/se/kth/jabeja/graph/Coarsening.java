@@ -0,0 +1,160 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.config.Matching;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * One level of multilevel coarsening: nodes are matched in pairs and every
+ * pair is contracted into one node of a coarser graph. The coarse node
+ * weighs as much as its members, parallel edges are merged into one edge
+ * carrying their total weight and edges inside a pair disappear, so the
+ * cut of a coloring is the same on both levels.
+ */
+public class Coarsening {
+  /**
+   * The coarse graph, colored 0.
+   */
+  public final Graph coarse;
+  /**
+   * The coarse node of every fine node.
+   */
+  public final int[] map;
+
+  private Coarsening(Graph coarse, int[] map) {
+    this.coarse = coarse;
+    this.map = map;
+  }
+
+  /**
+   * Matches the nodes of the fine graph and contracts the matching. Nodes
+   * are visited in random order, a node only matches a neighbour if their
+   * weights together stay within maxNodeWeight.
+   *
+   * @param maxNodeWeight largest weight of a coarse node
+   */
+  public static Coarsening coarsen(Graph fine, Matching matching, int maxNodeWeight, Random rand) {
+    int n = fine.size();
+    IntArray offsets = fine.getOffsets();
+    IntArray adjacency = fine.getAdjacency();
+    IntArray edgeWeights = fine.getEdgeWeights();
+
+    int[] visitOrder = new int[n];
+    for (int v = 0; v < n; v++) {
+      visitOrder[v] = v;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int t = visitOrder[i];
+      visitOrder[i] = visitOrder[j];
+      visitOrder[j] = t;
+    }
+
+    int[] mate = new int[n];
+    Arrays.fill(mate, -1);
+    for (int v : visitOrder) {
+      if (mate[v] != -1) {
+        continue;
+      }
+      int best = -1;
+      int bestArc = -1;
+      int degree = offsets.get(v + 1) - offsets.get(v);
+      // random matching starts at a random neighbour and takes the first fit
+      int start = matching == Matching.RANDOM && degree > 0 ? rand.nextInt(degree) : 0;
+      for (int k = 0; k < degree; k++) {
+        int i = offsets.get(v) + (start + k) % degree;
+        int u = adjacency.get(i);
+        if (u == v || mate[u] != -1 || fine.getNodeWeight(v) + fine.getNodeWeight(u) > maxNodeWeight) {
+          continue;
+        }
+        if (matching == Matching.RANDOM) {
+          best = u;
+          break;
+        }
+        if (best == -1 || heavier(edgeWeights, i, u, bestArc, best, fine)) {
+          best = u;
+          bestArc = i;
+        }
+      }
+      if (best == -1) {
+        mate[v] = v;
+      } else {
+        mate[v] = best;
+        mate[best] = v;
+      }
+    }
+
+    // coarse nodes are numbered in the order of their first member
+    int[] map = new int[n];
+    int coarseSize = 0;
+    for (int v = 0; v < n; v++) {
+      if (mate[v] >= v) {
+        map[v] = coarseSize;
+        map[mate[v]] = coarseSize;
+        coarseSize++;
+      }
+    }
+    return new Coarsening(contract(fine, mate, map, coarseSize), map);
+  }
+
+  /**
+   * Whether the arc i to u is a better match than the arc bestArc to best:
+   * heavier, or as heavy and to a lighter node.
+   */
+  private static boolean heavier(IntArray edgeWeights, int i, int u, int bestArc, int best, Graph fine) {
+    int w = edgeWeights == null ? 1 : edgeWeights.get(i);
+    int bestW = edgeWeights == null ? 1 : edgeWeights.get(bestArc);
+    return w > bestW || (w == bestW && fine.getNodeWeight(u) < fine.getNodeWeight(best));
+  }
+
+  private static Graph contract(Graph fine, int[] mate, int[] map, int coarseSize) {
+    int n = fine.size();
+    IntArray offsets = fine.getOffsets();
+    IntArray adjacency = fine.getAdjacency();
+    IntArray edgeWeights = fine.getEdgeWeights();
+
+    int[] coarseOffsets = new int[coarseSize + 1];
+    int[] coarseAdjacency = new int[fine.numArcs()];
+    int[] coarseEdgeWeights = new int[fine.numArcs()];
+    int[] coarseNodeWeights = new int[coarseSize];
+    // position of the arc to each coarse node in the row being built
+    int[] arcOf = new int[coarseSize];
+    Arrays.fill(arcOf, -1);
+
+    int arcs = 0;
+    for (int v = 0; v < n; v++) {
+      if (mate[v] < v) {
+        continue;
+      }
+      int c = map[v];
+      int rowStart = arcs;
+      coarseOffsets[c] = rowStart;
+      coarseNodeWeights[c] = fine.getNodeWeight(v) + (mate[v] != v ? fine.getNodeWeight(mate[v]) : 0);
+      for (int member = v; ; member = mate[v]) {
+        for (int i = offsets.get(member); i < offsets.get(member + 1); i++) {
+          int cu = map[adjacency.get(i)];
+          if (cu == c) {
+            continue;
+          }
+          int w = edgeWeights == null ? 1 : edgeWeights.get(i);
+          int arc = arcOf[cu];
+          if (arc >= rowStart && coarseAdjacency[arc] == cu) {
+            coarseEdgeWeights[arc] += w;
+          } else {
+            arcOf[cu] = arcs;
+            coarseAdjacency[arcs] = cu;
+            coarseEdgeWeights[arcs] = w;
+            arcs++;
+          }
+        }
+        if (member == mate[v]) {
+          break;
+        }
+      }
+    }
+    coarseOffsets[coarseSize] = arcs;
+    return new Graph(coarseOffsets, Arrays.copyOf(coarseAdjacency, arcs), Arrays.copyOf(coarseEdgeWeights, arcs),
+            new int[coarseSize], coarseNodeWeights);
+  }
+}
@@ -0,0 +1,114 @@
+package se.kth.jabeja.graph;
+
+/**
+ * Maintains, for every node, how many of its neighbours have each color,
+ * so the color degree of a node is a lookup instead of a neighbour scan.
+ * On a graph with edge weights the color degree is the weight of the
+ * edges to neighbours of the color.
+ *
+ * The histograms have to be told about every color change with
+ * {@link #recolor(int, int, int)}, which costs O(degree) of the recolored node.
+ */
+public abstract class ColorDegrees {
+  /**
+   * Dense histograms are used as long as they take at most this many
+   * entries per adjacency entry, sparse ones otherwise.
+   */
+  private static final int DENSE_ARCS_FACTOR = 4;
+  private static final int DENSE_MIN_ENTRIES = 1 << 16;
+
+  protected final Graph graph;
+  protected final int numColors;
+
+  protected ColorDegrees(Graph graph, int numColors) {
+    this.graph = graph;
+    this.numColors = numColors;
+  }
+
+  /**
+   * Creates the histograms for the current colors of the graph, picking
+   * a dense n*k layout when it is affordable and a sparse per-node layout
+   * otherwise.
+   *
+   * @param graph     the graph
+   * @param numColors colors are in [0, numColors)
+   */
+  public static ColorDegrees create(Graph graph, int numColors) {
+    long denseEntries = (long) graph.size() * numColors;
+    long limit = Math.max((long) DENSE_ARCS_FACTOR * graph.numArcs(), DENSE_MIN_ENTRIES);
+    ColorDegrees degrees;
+    if (denseEntries <= limit && denseEntries <= Integer.MAX_VALUE) {
+      degrees = new DenseColorDegrees(graph, numColors);
+    } else {
+      degrees = new SparseColorDegrees(graph, numColors);
+    }
+    degrees.rebuild();
+    return degrees;
+  }
+
+  /**
+   * @return how many neighbours of node v have the given color, or the
+   * weight of the edges to them
+   */
+  public abstract int get(int v, int color);
+
+  /**
+   * Recomputes all histograms from the current colors of the graph, one
+   * node at a time with {@link ColorHistogram}. The adjacency is symmetric,
+   * so the histogram of the neighbours of v is what v would have received
+   * from them.
+   */
+  public void rebuild() {
+    clear();
+    ColorHistogram kernel = ColorHistogram.create(graph, numColors);
+    int[] histogram = new int[numColors];
+    for (int v = 0; v < graph.size(); v++) {
+      kernel.count(v, histogram);
+      for (int color = 0; color < numColors; color++) {
+        if (histogram[color] != 0) {
+          add(v, color, histogram[color]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Updates the histograms of the neighbours of v after v changed color.
+   *
+   * @param v        the recolored node
+   * @param oldColor color of v before the change
+   * @param newColor color of v after the change
+   */
+  public void recolor(int v, int oldColor, int newColor) {
+    if (oldColor == newColor) {
+      return;
+    }
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    IntArray weights = graph.getEdgeWeights();
+    if (weights == null) {
+      for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+        int u = adjacency.get(i);
+        decrement(u, oldColor);
+        increment(u, newColor);
+      }
+    } else {
+      for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+        int u = adjacency.get(i);
+        add(u, oldColor, -weights.get(i));
+        add(u, newColor, weights.get(i));
+      }
+    }
+  }
+
+  protected abstract void clear();
+
+  /**
+   * Adds amount, which may be negative, to the color degree of v.
+   */
+  protected abstract void add(int v, int color, int amount);
+
+  protected abstract void increment(int v, int color);
+
+  protected abstract void decrement(int v, int color);
+}
@@ -0,0 +1,41 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Color degrees stored as one int[n * k] array, row v holding the
+ * histogram of node v.
+ */
+class DenseColorDegrees extends ColorDegrees {
+  private final int[] counts;
+
+  DenseColorDegrees(Graph graph, int numColors) {
+    super(graph, numColors);
+    this.counts = new int[graph.size() * numColors];
+  }
+
+  @Override
+  public int get(int v, int color) {
+    return counts[v * numColors + color];
+  }
+
+  @Override
+  protected void clear() {
+    Arrays.fill(counts, 0);
+  }
+
+  @Override
+  protected void increment(int v, int color) {
+    counts[v * numColors + color]++;
+  }
+
+  @Override
+  protected void add(int v, int color, int amount) {
+    counts[v * numColors + color] += amount;
+  }
+
+  @Override
+  protected void decrement(int v, int color) {
+    counts[v * numColors + color]--;
+  }
+}
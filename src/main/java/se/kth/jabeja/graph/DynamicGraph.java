@@ -0,0 +1,271 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Mutable undirected graph for applying insertions and deletions to a
+ * {@link Graph}. Every node keeps its own growable neighbour and weight
+ * arrays, so an update only touches the lists of its endpoints.
+ *
+ * Nodes keep the index they got when they were added: the nodes of the
+ * source graph in its order, inserted nodes after them. A deleted node
+ * keeps its index, it just has no edges and is skipped by
+ * {@link #toGraph(int[])}, which packs the remaining nodes into CSR form.
+ *
+ * Nodes touched by an update are remembered until {@link #clearChanged()}.
+ */
+public class DynamicGraph {
+  private static final int[] EMPTY = new int[0];
+
+  private int[][] neighbours;
+  private int[][] edgeWeights;
+  private int[] degrees;
+  private int[] nodeWeights;
+  private boolean[] deleted;
+  private boolean[] changed;
+  private int numNodes;
+  private int numDeleted;
+  private long numArcs;
+
+  /**
+   * Copies the topology and weights of a graph, in its index order.
+   */
+  public DynamicGraph(Graph graph) {
+    int n = graph.size();
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    IntArray weights = graph.getEdgeWeights();
+    neighbours = new int[Math.max(n, 1)][];
+    edgeWeights = new int[neighbours.length][];
+    degrees = new int[neighbours.length];
+    nodeWeights = new int[neighbours.length];
+    deleted = new boolean[neighbours.length];
+    changed = new boolean[neighbours.length];
+    for (int v = 0; v < n; v++) {
+      int from = offsets.get(v);
+      int degree = offsets.get(v + 1) - from;
+      neighbours[v] = new int[degree];
+      edgeWeights[v] = new int[degree];
+      for (int i = 0; i < degree; i++) {
+        neighbours[v][i] = adjacency.get(from + i);
+        edgeWeights[v][i] = weights == null ? 1 : weights.get(from + i);
+      }
+      degrees[v] = degree;
+      nodeWeights[v] = graph.getNodeWeight(v);
+    }
+    numNodes = n;
+    numArcs = graph.numArcs();
+  }
+
+  /**
+   * @return number of node indices handed out, deleted nodes included
+   */
+  public int capacity() {
+    return numNodes;
+  }
+
+  /**
+   * @return number of nodes that are not deleted
+   */
+  public int size() {
+    return numNodes - numDeleted;
+  }
+
+  public long numArcs() {
+    return numArcs;
+  }
+
+  public boolean contains(int v) {
+    return v >= 0 && v < numNodes && !deleted[v];
+  }
+
+  public int getDegree(int v) {
+    return degrees[v];
+  }
+
+  /**
+   * The neighbours of v in [0, getDegree(v)). Not a copy.
+   */
+  public int[] getNeighbours(int v) {
+    return neighbours[v];
+  }
+
+  public int getNodeWeight(int v) {
+    return nodeWeights[v];
+  }
+
+  /**
+   * @return whether an update touched node v since the last {@link #clearChanged()}
+   */
+  public boolean isChanged(int v) {
+    return changed[v];
+  }
+
+  public void clearChanged() {
+    Arrays.fill(changed, false);
+  }
+
+  /**
+   * @return the index of the new, isolated node
+   */
+  public int addNode(int weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Invalid node weight " + weight);
+    }
+    if (numNodes == degrees.length) {
+      int length = degrees.length * 2;
+      neighbours = Arrays.copyOf(neighbours, length);
+      edgeWeights = Arrays.copyOf(edgeWeights, length);
+      degrees = Arrays.copyOf(degrees, length);
+      nodeWeights = Arrays.copyOf(nodeWeights, length);
+      deleted = Arrays.copyOf(deleted, length);
+      changed = Arrays.copyOf(changed, length);
+    }
+    int v = numNodes++;
+    neighbours[v] = EMPTY;
+    edgeWeights[v] = EMPTY;
+    nodeWeights[v] = weight;
+    changed[v] = true;
+    return v;
+  }
+
+  /**
+   * Deletes node v and its edges. Its former neighbours count as changed.
+   */
+  public void removeNode(int v) {
+    check(v);
+    for (int i = degrees[v] - 1; i >= 0; i--) {
+      removeEdge(v, neighbours[v][i]);
+    }
+    neighbours[v] = EMPTY;
+    edgeWeights[v] = EMPTY;
+    deleted[v] = true;
+    changed[v] = false;
+    numDeleted++;
+  }
+
+  /**
+   * Adds the edge {u, v}, or sets its weight if it exists.
+   *
+   * @return false if the edge already existed with this weight
+   */
+  public boolean addEdge(int u, int v, int weight) {
+    check(u);
+    check(v);
+    if (u == v) {
+      throw new IllegalArgumentException("Self loops are not supported");
+    }
+    if (weight <= 0) {
+      throw new IllegalArgumentException("Invalid edge weight " + weight);
+    }
+    int i = indexOf(u, v);
+    if (i >= 0) {
+      if (edgeWeights[u][i] == weight) {
+        return false;
+      }
+      edgeWeights[u][i] = weight;
+      edgeWeights[v][indexOf(v, u)] = weight;
+    } else {
+      append(u, v, weight);
+      append(v, u, weight);
+      numArcs += 2;
+    }
+    changed[u] = true;
+    changed[v] = true;
+    return true;
+  }
+
+  /**
+   * Removes the edge {u, v}.
+   *
+   * @return false if there is no such edge
+   */
+  public boolean removeEdge(int u, int v) {
+    check(u);
+    check(v);
+    int i = indexOf(u, v);
+    if (i < 0) {
+      return false;
+    }
+    remove(u, i);
+    remove(v, indexOf(v, u));
+    numArcs -= 2;
+    changed[u] = true;
+    changed[v] = true;
+    return true;
+  }
+
+  private void check(int v) {
+    if (!contains(v)) {
+      throw new IllegalArgumentException("Node " + v + " does not exist");
+    }
+  }
+
+  private int indexOf(int u, int v) {
+    int[] list = neighbours[u];
+    for (int i = 0; i < degrees[u]; i++) {
+      if (list[i] == v) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void append(int u, int v, int weight) {
+    if (degrees[u] == neighbours[u].length) {
+      int length = Math.max(4, degrees[u] * 2);
+      neighbours[u] = Arrays.copyOf(neighbours[u], length);
+      edgeWeights[u] = Arrays.copyOf(edgeWeights[u], length);
+    }
+    neighbours[u][degrees[u]] = v;
+    edgeWeights[u][degrees[u]] = weight;
+    degrees[u]++;
+  }
+
+  /**
+   * Removes entry i of the list of u, moving the last entry into its place.
+   */
+  private void remove(int u, int i) {
+    int last = --degrees[u];
+    neighbours[u][i] = neighbours[u][last];
+    edgeWeights[u][i] = edgeWeights[u][last];
+  }
+
+  /**
+   * Indices of the nodes that are not deleted, in index order, which are
+   * the dense indices of {@link #toGraph(int[])}.
+   */
+  public int[] nodes() {
+    int[] nodes = new int[size()];
+    int count = 0;
+    for (int v = 0; v < numNodes; v++) {
+      if (!deleted[v]) {
+        nodes[count++] = v;
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Packs the nodes that are not deleted, in index order, into a graph.
+   * Weight arrays are only kept if some weight is not 1.
+   *
+   * @param colors color of every node index, the colors and initial
+   *               colors of the graph
+   */
+  public Graph toGraph(int[] colors) {
+    int[] nodes = nodes();
+    int[] position = new int[numNodes];
+    for (int i = 0; i < nodes.length; i++) {
+      position[nodes[i]] = i;
+    }
+    Graph.Builder builder = new Graph.Builder(nodes.length, (int) numArcs);
+    for (int v : nodes) {
+      builder.addNode(colors[v], nodeWeights[v]);
+      for (int i = 0; i < degrees[v]; i++) {
+        builder.addNeighbour(position[neighbours[v][i]], edgeWeights[v][i]);
+      }
+    }
+    return builder.build();
+  }
+}
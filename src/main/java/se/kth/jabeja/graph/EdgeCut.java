@@ -0,0 +1,189 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the edge cut, the cut of every color and the number of migrated
+ * nodes up to date while nodes are recolored, so they can be read in O(1).
+ *
+ * The adjacency is assumed to be symmetric, as it is in the graph files.
+ * Self loops are never cut. On a graph with edge weights the cuts are the
+ * weights of the cut edges.
+ *
+ * Concurrent writers record their changes in a private {@link Delta} and
+ * {@link #merge(Delta)} it once they are done.
+ */
+public class EdgeCut {
+  private final Graph graph;
+  private final int[] colorCuts;
+  private long cutArcs;
+  private int migrations;
+
+  /**
+   * Pending changes to an {@link EdgeCut}, recorded by one writer.
+   */
+  public static class Delta {
+    private final int[] colorCuts;
+    private long cutArcs;
+    private int migrations;
+
+    public Delta(int numColors) {
+      this.colorCuts = new int[numColors];
+    }
+  }
+
+  public EdgeCut(Graph graph, int numColors) {
+    this.graph = graph;
+    this.colorCuts = new int[numColors];
+    recompute();
+  }
+
+  public Delta newDelta() {
+    return new Delta(colorCuts.length);
+  }
+
+  /**
+   * @return number, or weight, of edges whose endpoints have different colors
+   */
+  public int getEdgeCut() {
+    return (int) (cutArcs / 2);
+  }
+
+  /**
+   * @return number, or weight, of cut edges with one endpoint of the given color
+   */
+  public int getColorCut(int color) {
+    return colorCuts[color];
+  }
+
+  public int[] getColorCuts() {
+    return colorCuts.clone();
+  }
+
+  /**
+   * @return number of nodes whose color differs from their initial color
+   */
+  public int getMigrations() {
+    return migrations;
+  }
+
+  /**
+   * Recomputes all values from the current colors of the graph.
+   */
+  public void recompute() {
+    int[] colors = graph.getColors();
+    int[] initColors = graph.getInitColors();
+    ColorHistogram kernel = ColorHistogram.create(graph, colorCuts.length);
+    int[] histogram = new int[colorCuts.length];
+    Arrays.fill(colorCuts, 0);
+    cutArcs = 0;
+    migrations = 0;
+    for (int v = 0; v < colors.length; v++) {
+      int color = colors[v];
+      if (color != initColors[v]) {
+        migrations++;
+      }
+      // every arc to another color is cut
+      kernel.count(v, histogram);
+      int external = 0;
+      for (int c = 0; c < histogram.length; c++) {
+        if (c != color) {
+          external += histogram[c];
+        }
+      }
+      cutArcs += external;
+      colorCuts[color] += external;
+    }
+  }
+
+  /**
+   * Accounts for node v changing from oldColor to newColor. Must be called
+   * after the color array has been updated, once per recolored node.
+   */
+  public void recolor(int v, int oldColor, int newColor) {
+    if (oldColor == newColor) {
+      return;
+    }
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int[] colors = graph.getColors();
+    IntArray weights = graph.getEdgeWeights();
+    for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+      int u = adjacency.get(i);
+      if (u == v) {
+        continue;
+      }
+      int uColor = colors[u];
+      int w = weights == null ? 1 : weights.get(i);
+      if (uColor != oldColor) {
+        cutArcs -= 2L * w;
+        colorCuts[oldColor] -= w;
+        colorCuts[uColor] -= w;
+      }
+      if (uColor != newColor) {
+        cutArcs += 2L * w;
+        colorCuts[newColor] += w;
+        colorCuts[uColor] += w;
+      }
+    }
+    migrations += migrationChange(v, oldColor, newColor);
+  }
+
+  /**
+   * Same as {@link #recolor(int, int, int)}, but records the change in the
+   * given delta instead of applying it. The neighbours of v must not be
+   * recolored by anyone else during the call.
+   */
+  public void recolor(int v, int oldColor, int newColor, Delta delta) {
+    if (oldColor == newColor) {
+      return;
+    }
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int[] colors = graph.getColors();
+    IntArray weights = graph.getEdgeWeights();
+    for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+      int u = adjacency.get(i);
+      if (u == v) {
+        continue;
+      }
+      int uColor = colors[u];
+      int w = weights == null ? 1 : weights.get(i);
+      if (uColor != oldColor) {
+        delta.cutArcs -= 2L * w;
+        delta.colorCuts[oldColor] -= w;
+        delta.colorCuts[uColor] -= w;
+      }
+      if (uColor != newColor) {
+        delta.cutArcs += 2L * w;
+        delta.colorCuts[newColor] += w;
+        delta.colorCuts[uColor] += w;
+      }
+    }
+    delta.migrations += migrationChange(v, oldColor, newColor);
+  }
+
+  /**
+   * Applies and resets the given delta.
+   */
+  public synchronized void merge(Delta delta) {
+    cutArcs += delta.cutArcs;
+    migrations += delta.migrations;
+    for (int c = 0; c < colorCuts.length; c++) {
+      colorCuts[c] += delta.colorCuts[c];
+    }
+    delta.cutArcs = 0;
+    delta.migrations = 0;
+    Arrays.fill(delta.colorCuts, 0);
+  }
+
+  private int migrationChange(int v, int oldColor, int newColor) {
+    int initColor = graph.getInitColor(v);
+    if (oldColor == initColor) {
+      return 1;
+    } else if (newColor == initColor) {
+      return -1;
+    }
+    return 0;
+  }
+}
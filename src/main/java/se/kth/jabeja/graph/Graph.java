@@ -0,0 +1,408 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.Node;
+
+import java.util.Arrays;
+
+/**
+ * Graph stored in compressed sparse row (CSR) form.
+ *
+ * Nodes are addressed by a dense index in [0, size()). The neighbours of
+ * node v are adjacency[offsets[v]] .. adjacency[offsets[v + 1] - 1], and
+ * are dense indices as well. The ids used in the input file are 1-based,
+ * so the original id of node v is v + 1, unless the nodes were renumbered
+ * by {@link #permute(int[])}, which keeps the original index of every node.
+ *
+ * Edges and nodes may carry positive integer weights, kept in
+ * edgeWeights, parallel to the adjacency, and nodeWeights. Either is null
+ * when all its weights are 1, which is what the unweighted code paths test.
+ *
+ * The offsets, adjacency and edge weights are {@link IntArray}s, so the
+ * topology, which grows with the number of edges, can be kept off the
+ * heap. The per node arrays always are on the heap.
+ *
+ * The topology is immutable once built, only the colors change.
+ */
+public class Graph {
+  private final IntArray offsets;
+  private final IntArray adjacency;
+  private final int[] colors;
+  private final int[] initColors;
+  private final IntArray edgeWeights;
+  private final int[] nodeWeights;
+  /**
+   * Index in the input file of every node, null if the nodes are in file order.
+   */
+  private final int[] originalIndices;
+
+  public Graph(int[] offsets, int[] adjacency, int[] colors) {
+    this(offsets, adjacency, null, colors, null);
+  }
+
+  /**
+   * @param edgeWeights weight of every adjacency entry, null for all 1
+   * @param nodeWeights weight of every node, null for all 1
+   */
+  public Graph(int[] offsets, int[] adjacency, int[] edgeWeights, int[] colors, int[] nodeWeights) {
+    this(IntArray.wrap(offsets), IntArray.wrap(adjacency), edgeWeights == null ? null : IntArray.wrap(edgeWeights),
+            colors, nodeWeights);
+  }
+
+  /**
+   * @param edgeWeights weight of every adjacency entry, null for all 1
+   * @param nodeWeights weight of every node, null for all 1
+   */
+  public Graph(IntArray offsets, IntArray adjacency, IntArray edgeWeights, int[] colors, int[] nodeWeights) {
+    this(offsets, adjacency, edgeWeights, colors, colors.clone(), nodeWeights, null);
+  }
+
+  private Graph(IntArray offsets, IntArray adjacency, IntArray edgeWeights, int[] colors, int[] initColors,
+                int[] nodeWeights, int[] originalIndices) {
+    if (offsets.length() != colors.length + 1) {
+      throw new IllegalArgumentException("Expected " + (colors.length + 1) + " offsets, got " + offsets.length());
+    }
+    if (edgeWeights != null && edgeWeights.length() != adjacency.length()) {
+      throw new IllegalArgumentException("Expected " + adjacency.length() + " edge weights, got " + edgeWeights.length());
+    }
+    if (nodeWeights != null && nodeWeights.length != colors.length) {
+      throw new IllegalArgumentException("Expected " + colors.length + " node weights, got " + nodeWeights.length);
+    }
+    this.offsets = offsets;
+    this.adjacency = adjacency;
+    this.edgeWeights = edgeWeights;
+    this.colors = colors;
+    this.initColors = initColors;
+    this.nodeWeights = nodeWeights;
+    this.originalIndices = originalIndices;
+  }
+
+  /**
+   * @return number of nodes
+   */
+  public int size() {
+    return colors.length;
+  }
+
+  /**
+   * @return number of entries in the adjacency array, i.e. twice the
+   * number of undirected edges for a symmetric graph
+   */
+  public int numArcs() {
+    return offsets.get(colors.length);
+  }
+
+  public int getId(int v) {
+    return getOriginalIndex(v) + 1;
+  }
+
+  /**
+   * @return the index node v had in the input file
+   */
+  public int getOriginalIndex(int v) {
+    return originalIndices == null ? v : originalIndices[v];
+  }
+
+  /**
+   * @param values one value per node, by dense index
+   * @return the values in the order of the input file
+   */
+  public int[] toOriginalOrder(int[] values) {
+    if (originalIndices == null) {
+      return values.clone();
+    }
+    int[] result = new int[values.length];
+    for (int v = 0; v < values.length; v++) {
+      result[originalIndices[v]] = values[v];
+    }
+    return result;
+  }
+
+  /**
+   * Renumbers the nodes. Neighbours keep their relative order, colors and
+   * initial colors move with their nodes. The renumbered topology is off
+   * the heap if this one is.
+   *
+   * @param order the node that gets each new index, order[new] = old
+   * @return the renumbered graph, remembering the original indices
+   */
+  public Graph permute(int[] order) {
+    int n = size();
+    if (order.length != n) {
+      throw new IllegalArgumentException("Expected an order of " + n + " nodes, got " + order.length);
+    }
+    int[] position = new int[n];
+    Arrays.fill(position, -1);
+    for (int i = 0; i < n; i++) {
+      if (position[order[i]] != -1) {
+        throw new IllegalArgumentException("Node " + order[i] + " appears twice in the order");
+      }
+      position[order[i]] = i;
+    }
+
+    IntArray o = newTopologyArray(n + 1);
+    IntArray a = newTopologyArray(adjacency.length());
+    IntArray ew = edgeWeights == null ? null : newTopologyArray(adjacency.length());
+    int[] nw = nodeWeights == null ? null : new int[n];
+    int[] c = new int[n];
+    int[] ic = new int[n];
+    int[] ids = new int[n];
+    int arcs = 0;
+    for (int i = 0; i < n; i++) {
+      int v = order[i];
+      o.set(i, arcs);
+      for (int j = offsets.get(v); j < offsets.get(v + 1); j++) {
+        if (ew != null) {
+          ew.set(arcs, edgeWeights.get(j));
+        }
+        a.set(arcs++, position[adjacency.get(j)]);
+      }
+      if (nw != null) {
+        nw[i] = nodeWeights[v];
+      }
+      c[i] = colors[v];
+      ic[i] = initColors[v];
+      ids[i] = getOriginalIndex(v);
+    }
+    o.set(n, arcs);
+    return new Graph(o, a, ew, c, ic, nw, ids);
+  }
+
+  private IntArray newTopologyArray(int length) {
+    return isOffHeap() ? IntArray.allocateDirect(length) : IntArray.wrap(new int[length]);
+  }
+
+  public int getDegree(int v) {
+    return offsets.get(v + 1) - offsets.get(v);
+  }
+
+  /**
+   * @return sum of the weights of the edges of node v, its degree if the
+   * edges are unweighted
+   */
+  public int getWeightedDegree(int v) {
+    if (edgeWeights == null) {
+      return getDegree(v);
+    }
+    int sum = 0;
+    for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+      sum += edgeWeights.get(i);
+    }
+    return sum;
+  }
+
+  /**
+   * @return sum of the weights of all undirected edges, the number of edges
+   * if the edges are unweighted
+   */
+  public long getTotalEdgeWeight() {
+    if (edgeWeights == null) {
+      return numArcs() / 2;
+    }
+    long sum = 0;
+    for (int i = 0; i < numArcs(); i++) {
+      sum += edgeWeights.get(i);
+    }
+    return sum / 2;
+  }
+
+  public int getNodeWeight(int v) {
+    return nodeWeights == null ? 1 : nodeWeights[v];
+  }
+
+  /**
+   * @return sum of all node weights
+   */
+  public long getTotalNodeWeight() {
+    if (nodeWeights == null) {
+      return size();
+    }
+    long sum = 0;
+    for (int w : nodeWeights) {
+      sum += w;
+    }
+    return sum;
+  }
+
+  public int getColor(int v) {
+    return colors[v];
+  }
+
+  public void setColor(int v, int color) {
+    colors[v] = color;
+  }
+
+  public int getInitColor(int v) {
+    return initColors[v];
+  }
+
+  /**
+   * The backing offsets array, of length size() + 1. Not a copy.
+   */
+  public IntArray getOffsets() {
+    return offsets;
+  }
+
+  /**
+   * The backing adjacency array. Not a copy.
+   */
+  public IntArray getAdjacency() {
+    return adjacency;
+  }
+
+  /**
+   * The backing edge weights, parallel to the adjacency array, or null if
+   * every edge weighs 1. Not a copy.
+   */
+  public IntArray getEdgeWeights() {
+    return edgeWeights;
+  }
+
+  /**
+   * @return whether the topology is stored outside of the heap
+   */
+  public boolean isOffHeap() {
+    return adjacency.isOffHeap();
+  }
+
+  /**
+   * The backing node weights, or null if every node weighs 1. Not a copy.
+   */
+  public int[] getNodeWeights() {
+    return nodeWeights;
+  }
+
+  /**
+   * The backing color array. Not a copy, writes are visible to the graph.
+   */
+  public int[] getColors() {
+    return colors;
+  }
+
+  public int[] getInitColors() {
+    return initColors;
+  }
+
+  /**
+   * @return a graph sharing this topology, colored with a copy of the
+   * initial colors of this graph
+   */
+  public Graph copy() {
+    return new Graph(offsets, adjacency, edgeWeights, initColors.clone(), initColors, nodeWeights, originalIndices);
+  }
+
+  /**
+   * @param colors the colors of the new graph, also its initial colors
+   * @return a graph sharing this topology, weights and original indices
+   */
+  public Graph withColors(int[] colors) {
+    return new Graph(offsets, adjacency, edgeWeights, colors, colors.clone(), nodeWeights, originalIndices);
+  }
+
+  /**
+   * @return a {@link Node} view of node v
+   */
+  public Node getNode(int v) {
+    return new Node(this, v);
+  }
+
+  /**
+   * Incrementally builds a {@link Graph}, one node at a time in index order.
+   * The weight arrays are only allocated once a weight other than 1 is added.
+   */
+  public static class Builder {
+    private int[] offsets;
+    private int[] adjacency;
+    private int[] colors;
+    private int[] edgeWeights;
+    private int[] nodeWeights;
+    private int numNodes;
+    private int numArcs;
+
+    public Builder(int expectedNodes, int expectedArcs) {
+      offsets = new int[Math.max(expectedNodes, 1) + 1];
+      adjacency = new int[Math.max(expectedArcs, 1)];
+      colors = new int[Math.max(expectedNodes, 1)];
+    }
+
+    /**
+     * Starts a new node. Neighbours added afterwards belong to it.
+     *
+     * @param color initial color of the node
+     * @return the dense index of the new node
+     */
+    public int addNode(int color) {
+      return addNode(color, 1);
+    }
+
+    /**
+     * Starts a new node of the given weight.
+     *
+     * @param color initial color of the node
+     * @return the dense index of the new node
+     */
+    public int addNode(int color, int weight) {
+      if (numNodes == colors.length) {
+        colors = Arrays.copyOf(colors, colors.length * 2);
+        offsets = Arrays.copyOf(offsets, colors.length + 1);
+        if (nodeWeights != null) {
+          nodeWeights = Arrays.copyOf(nodeWeights, colors.length);
+        }
+      }
+      if (weight != 1 && nodeWeights == null) {
+        nodeWeights = ones(colors.length);
+      }
+      if (nodeWeights != null) {
+        nodeWeights[numNodes] = weight;
+      }
+      colors[numNodes] = color;
+      offsets[numNodes] = numArcs;
+      return numNodes++;
+    }
+
+    /**
+     * Adds a neighbour to the last added node.
+     *
+     * @param v dense index of the neighbour
+     */
+    public Builder addNeighbour(int v) {
+      return addNeighbour(v, 1);
+    }
+
+    /**
+     * Adds a neighbour to the last added node, over an edge of the given weight.
+     *
+     * @param v dense index of the neighbour
+     */
+    public Builder addNeighbour(int v, int weight) {
+      if (numArcs == adjacency.length) {
+        adjacency = Arrays.copyOf(adjacency, adjacency.length * 2);
+        if (edgeWeights != null) {
+          edgeWeights = Arrays.copyOf(edgeWeights, adjacency.length);
+        }
+      }
+      if (weight != 1 && edgeWeights == null) {
+        edgeWeights = ones(adjacency.length);
+      }
+      if (edgeWeights != null) {
+        edgeWeights[numArcs] = weight;
+      }
+      adjacency[numArcs++] = v;
+      return this;
+    }
+
+    private static int[] ones(int length) {
+      int[] values = new int[length];
+      Arrays.fill(values, 1);
+      return values;
+    }
+
+    public Graph build() {
+      int[] o = Arrays.copyOf(offsets, numNodes + 1);
+      o[numNodes] = numArcs;
+      return new Graph(o, Arrays.copyOf(adjacency, numArcs),
+              edgeWeights == null ? null : Arrays.copyOf(edgeWeights, numArcs),
+              Arrays.copyOf(colors, numNodes),
+              nodeWeights == null ? null : Arrays.copyOf(nodeWeights, numNodes));
+    }
+  }
+}
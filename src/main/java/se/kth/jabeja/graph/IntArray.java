@@ -0,0 +1,194 @@
+package se.kth.jabeja.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed length array of ints, either a plain int[] on the heap or
+ * little-endian memory outside of it: direct buffers, or a memory-mapped
+ * file whose pages the operating system loads and evicts as needed.
+ *
+ * Off-heap arrays are split into segments of {@link #SEGMENT_INTS} ints,
+ * since a single buffer is limited to 2GB. The garbage collector never
+ * sees their contents, so an off-heap graph costs the heap a few objects
+ * no matter how many edges it has.
+ */
+public abstract class IntArray {
+  /**
+   * Ints per off-heap segment, 1GB.
+   */
+  static final int SEGMENT_SHIFT = 28;
+  static final int SEGMENT_INTS = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_INTS - 1;
+
+  public abstract int get(int i);
+
+  public abstract void set(int i, int value);
+
+  public abstract int length();
+
+  /**
+   * @return the backing heap array, or null if the array is off-heap
+   */
+  public abstract int[] array();
+
+  public boolean isOffHeap() {
+    return array() == null;
+  }
+
+  /**
+   * @return a copy of the values on the heap
+   */
+  public int[] toArray() {
+    int[] values = new int[length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = get(i);
+    }
+    return values;
+  }
+
+  /**
+   * @return an array backed by the given heap array, not a copy
+   */
+  public static IntArray wrap(int[] values) {
+    return new Heap(values);
+  }
+
+  /**
+   * @return a zeroed array in direct memory, which counts against
+   * -XX:MaxDirectMemorySize and not against the heap
+   */
+  public static IntArray allocateDirect(int length) {
+    IntBuffer[] segments = new IntBuffer[segments(length)];
+    for (int s = 0; s < segments.length; s++) {
+      segments[s] = ByteBuffer.allocateDirect(4 * segmentLength(length, s))
+              .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+    return of(segments, length);
+  }
+
+  /**
+   * Maps length little-endian ints of a file, starting at position. The
+   * mapping stays valid after the channel is closed.
+   *
+   * @param mode {@link FileChannel.MapMode#READ_ONLY} for arrays that are only read
+   */
+  public static IntArray map(FileChannel channel, long position, int length, FileChannel.MapMode mode)
+          throws IOException {
+    IntBuffer[] segments = new IntBuffer[segments(length)];
+    for (int s = 0; s < segments.length; s++) {
+      segments[s] = channel.map(mode, position + 4L * s * SEGMENT_INTS, 4L * segmentLength(length, s))
+              .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+    return of(segments, length);
+  }
+
+  private static IntArray of(IntBuffer[] segments, int length) {
+    return segments.length == 1 ? new Buffer(segments[0]) : new Segmented(segments, length);
+  }
+
+  private static int segments(int length) {
+    return Math.max(1, (int) ((length + (long) SEGMENT_MASK) >>> SEGMENT_SHIFT));
+  }
+
+  private static int segmentLength(int length, int segment) {
+    return Math.min(SEGMENT_INTS, length - segment * SEGMENT_INTS);
+  }
+
+  private static final class Heap extends IntArray {
+    private final int[] values;
+
+    Heap(int[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public int get(int i) {
+      return values[i];
+    }
+
+    @Override
+    public void set(int i, int value) {
+      values[i] = value;
+    }
+
+    @Override
+    public int length() {
+      return values.length;
+    }
+
+    @Override
+    public int[] array() {
+      return values;
+    }
+
+    @Override
+    public int[] toArray() {
+      return values.clone();
+    }
+  }
+
+  /**
+   * An off-heap array that fits in one segment.
+   */
+  private static final class Buffer extends IntArray {
+    private final IntBuffer values;
+
+    Buffer(IntBuffer values) {
+      this.values = values;
+    }
+
+    @Override
+    public int get(int i) {
+      return values.get(i);
+    }
+
+    @Override
+    public void set(int i, int value) {
+      values.put(i, value);
+    }
+
+    @Override
+    public int length() {
+      return values.limit();
+    }
+
+    @Override
+    public int[] array() {
+      return null;
+    }
+  }
+
+  private static final class Segmented extends IntArray {
+    private final IntBuffer[] segments;
+    private final int length;
+
+    Segmented(IntBuffer[] segments, int length) {
+      this.segments = segments;
+      this.length = length;
+    }
+
+    @Override
+    public int get(int i) {
+      return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(int i, int value) {
+      segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, value);
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public int[] array() {
+      return null;
+    }
+  }
+}
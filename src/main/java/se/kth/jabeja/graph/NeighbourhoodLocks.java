@@ -0,0 +1,85 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding the closed neighbourhood of a pair of nodes.
+ *
+ * Swapping p and q writes the colors of p and q and the color degrees of
+ * all their neighbours, and the edge cut update reads the neighbour
+ * colors. Locking the stripes of p, q and their neighbours therefore makes
+ * the whole swap atomic with respect to any other swap. Stripes are always
+ * taken in ascending order, so concurrent swaps cannot deadlock.
+ */
+public class NeighbourhoodLocks {
+  private final Graph graph;
+  private final ReentrantLock[] locks;
+  private final int mask;
+
+  /**
+   * @param graph   the graph
+   * @param stripes number of stripes, rounded up to a power of two
+   */
+  public NeighbourhoodLocks(Graph graph, int stripes) {
+    int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1;
+    this.graph = graph;
+    this.locks = new ReentrantLock[size];
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @return a scratch buffer large enough for any {@link #lock} call
+   */
+  public int[] newScratch() {
+    return new int[2];
+  }
+
+  /**
+   * Locks p, q and all their neighbours.
+   *
+   * @param scratch buffer from {@link #newScratch()}, grown when needed
+   * @return the buffer holding the taken stripes, to be passed to
+   * {@link #unlock(int[])}
+   */
+  public int[] lock(int p, int q, int[] scratch) {
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int needed = 3 + graph.getDegree(p) + graph.getDegree(q);
+    int[] stripes = scratch.length >= needed ? scratch : new int[Math.max(needed, scratch.length * 2)];
+
+    int count = 1;
+    stripes[count++] = p & mask;
+    stripes[count++] = q & mask;
+    for (int i = offsets.get(p); i < offsets.get(p + 1); i++) {
+      stripes[count++] = adjacency.get(i) & mask;
+    }
+    for (int i = offsets.get(q); i < offsets.get(q + 1); i++) {
+      stripes[count++] = adjacency.get(i) & mask;
+    }
+    Arrays.sort(stripes, 1, count);
+
+    // stripes[0] holds the number of distinct stripes that follow it
+    int distinct = 0;
+    for (int i = 1; i < count; i++) {
+      if (distinct == 0 || stripes[distinct] != stripes[i]) {
+        stripes[++distinct] = stripes[i];
+        locks[stripes[distinct]].lock();
+      }
+    }
+    stripes[0] = distinct;
+    return stripes;
+  }
+
+  /**
+   * Releases the stripes taken by {@link #lock}.
+   */
+  public void unlock(int[] stripes) {
+    for (int i = stripes[0]; i >= 1; i--) {
+      locks[stripes[i]].unlock();
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package se.kth.jabeja.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Quality measures of a partition of a graph, computed in one parallel
+ * pass over the adjacency, split into ranges of nodes.
+ *
+ * The external degree of a node is the number, or weight, of its edges to
+ * other partitions; a node with a positive external degree is a boundary
+ * node. The communication volume counts, for every node, the other
+ * partitions its neighbours are in, i.e. how many copies of the node other
+ * partitions need. Sizes and imbalance use the node weights.
+ *
+ * The adjacency is assumed to be symmetric, as in {@link EdgeCut}.
+ */
+public class PartitionQuality {
+  /**
+   * Tasks per thread. Tasks cover equal numbers of arcs, a few per thread
+   * balance what the split cannot foresee.
+   */
+  private static final int TASKS_PER_THREAD = 4;
+
+  public final int numPartitions;
+  /**
+   * Number, or weight, of edges between partitions.
+   */
+  public final long edgeCut;
+  public final long communicationVolume;
+  public final long boundaryNodes;
+  public final long maxExternalDegree;
+  /**
+   * Sum of the external degrees of all nodes, i.e. twice the edge cut.
+   */
+  public final long totalExternalDegree;
+  public final long numNodes;
+  public final long numArcs;
+  /**
+   * Weight of all edges, the number of edges if they are unweighted.
+   */
+  public final long totalEdgeWeight;
+
+  public final long[] nodes;
+  public final long[] weights;
+  /**
+   * Number, or weight, of the edges leaving each partition.
+   */
+  public final long[] cuts;
+  public final long[] volumes;
+  public final long[] boundaries;
+
+  private PartitionQuality(Partial total, int numPartitions, long numNodes, long numArcs, long totalEdgeWeight) {
+    this.numPartitions = numPartitions;
+    this.edgeCut = total.external / 2;
+    this.communicationVolume = total.volume;
+    this.boundaryNodes = total.boundary;
+    this.maxExternalDegree = total.maxExternal;
+    this.totalExternalDegree = total.external;
+    this.numNodes = numNodes;
+    this.numArcs = numArcs;
+    this.totalEdgeWeight = totalEdgeWeight;
+    this.nodes = total.nodes;
+    this.weights = total.weights;
+    this.cuts = total.cuts;
+    this.volumes = total.volumes;
+    this.boundaries = total.boundaries;
+  }
+
+  /**
+   * @param parts         partition of every node, in [0, numPartitions)
+   * @param numPartitions number of partitions
+   * @param threads       number of threads to evaluate with
+   */
+  public static PartitionQuality evaluate(final Graph graph, final int[] parts, final int numPartitions, int threads) {
+    final int n = graph.size();
+    if (parts.length != n) {
+      throw new IllegalArgumentException("Expected the partitions of " + n + " nodes, got " + parts.length);
+    }
+    for (int v = 0; v < n; v++) {
+      if (parts[v] < 0 || parts[v] >= numPartitions) {
+        throw new IllegalArgumentException("Node " + graph.getId(v) + " is in partition " + parts[v] +
+                ", expected one in [0, " + numPartitions + ")");
+      }
+    }
+
+    int[] bounds = split(graph, threads * TASKS_PER_THREAD);
+    List<Callable<Partial>> tasks = new ArrayList<Callable<Partial>>();
+    for (int t = 0; t + 1 < bounds.length; t++) {
+      final int start = bounds[t];
+      final int end = bounds[t + 1];
+      tasks.add(new Callable<Partial>() {
+        @Override
+        public Partial call() {
+          return evaluate(graph, parts, numPartitions, start, end);
+        }
+      });
+    }
+
+    Partial total = new Partial(numPartitions);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      for (Future<Partial> future : pool.invokeAll(tasks)) {
+        total.merge(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while evaluating the partition", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    return new PartitionQuality(total, numPartitions, n, graph.numArcs(), graph.getTotalEdgeWeight());
+  }
+
+  /**
+   * Cuts the nodes into at most count ranges of about the same number of
+   * arcs, each range starting at the first node past its share.
+   */
+  private static int[] split(Graph graph, int count) {
+    IntArray offsets = graph.getOffsets();
+    int n = graph.size();
+    long arcs = graph.numArcs();
+    int[] bounds = new int[count + 1];
+    int numBounds = 1;
+    for (int t = 1; t < count; t++) {
+      long target = arcs * t / count;
+      // first node whose arcs start at or after the target
+      int lo = bounds[numBounds - 1];
+      int hi = n;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (offsets.get(mid) < target) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      if (lo > bounds[numBounds - 1] && lo < n) {
+        bounds[numBounds++] = lo;
+      }
+    }
+    bounds[numBounds++] = n;
+    return Arrays.copyOf(bounds, numBounds);
+  }
+
+  private static Partial evaluate(Graph graph, int[] parts, int numPartitions, int from, int to) {
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    IntArray edgeWeights = graph.getEdgeWeights();
+    Partial partial = new Partial(numPartitions);
+    // seen[p] == v once a neighbour of v in partition p was counted
+    int[] seen = new int[numPartitions];
+    Arrays.fill(seen, -1);
+    for (int v = from; v < to; v++) {
+      int part = parts[v];
+      long external = 0;
+      int volume = 0;
+      for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+        int other = parts[adjacency.get(i)];
+        if (other == part) {
+          continue;
+        }
+        external += edgeWeights == null ? 1 : edgeWeights.get(i);
+        if (seen[other] != v) {
+          seen[other] = v;
+          volume++;
+        }
+      }
+      partial.nodes[part]++;
+      partial.weights[part] += graph.getNodeWeight(v);
+      partial.cuts[part] += external;
+      partial.volumes[part] += volume;
+      partial.external += external;
+      partial.volume += volume;
+      partial.maxExternal = Math.max(partial.maxExternal, external);
+      if (external > 0) {
+        partial.boundaries[part]++;
+        partial.boundary++;
+      }
+    }
+    return partial;
+  }
+
+  /**
+   * @return the weight of the heaviest partition relative to the average
+   * partition weight, 1 for a perfect balance
+   */
+  public double getImbalance() {
+    long total = 0;
+    long max = 0;
+    for (long w : weights) {
+      total += w;
+      max = Math.max(max, w);
+    }
+    return total == 0 ? 1 : (double) max * numPartitions / total;
+  }
+
+  /**
+   * @return the external degree averaged over all nodes
+   */
+  public double getAvgExternalDegree() {
+    return numNodes == 0 ? 0 : (double) totalExternalDegree / numNodes;
+  }
+
+  /**
+   * Sums of one range of nodes.
+   */
+  private static class Partial {
+    final long[] nodes;
+    final long[] weights;
+    final long[] cuts;
+    final long[] volumes;
+    final long[] boundaries;
+    long external;
+    long volume;
+    long boundary;
+    long maxExternal;
+
+    Partial(int numPartitions) {
+      nodes = new long[numPartitions];
+      weights = new long[numPartitions];
+      cuts = new long[numPartitions];
+      volumes = new long[numPartitions];
+      boundaries = new long[numPartitions];
+    }
+
+    void merge(Partial other) {
+      for (int p = 0; p < nodes.length; p++) {
+        nodes[p] += other.nodes[p];
+        weights[p] += other.weights[p];
+        cuts[p] += other.cuts[p];
+        volumes[p] += other.volumes[p];
+        boundaries[p] += other.boundaries[p];
+      }
+      external += other.external;
+      volume += other.volume;
+      boundary += other.boundary;
+      maxExternal = Math.max(maxExternal, other.maxExternal);
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.config.NodeOrdering;
+
+import java.util.Arrays;
+
+/**
+ * Orders the nodes of a graph for locality, see {@link NodeOrdering}. The
+ * orders are meant for {@link Graph#permute(int[])}: order[new] = old.
+ * All orders are deterministic.
+ */
+public class Reordering {
+  /**
+   * Nodes placed before a node leaves the window of {@link NodeOrdering#GORDER}.
+   */
+  private static final int GORDER_WINDOW = 5;
+
+  private Reordering() {
+  }
+
+  /**
+   * @return the graph renumbered by the ordering, or the graph itself for
+   * {@link NodeOrdering#NONE}
+   */
+  public static Graph reorder(Graph graph, NodeOrdering ordering) {
+    if (ordering == NodeOrdering.NONE) {
+      return graph;
+    }
+    return graph.permute(order(graph, ordering));
+  }
+
+  public static int[] order(Graph graph, NodeOrdering ordering) {
+    switch (ordering) {
+      case NONE:
+        int[] identity = new int[graph.size()];
+        for (int v = 0; v < identity.length; v++) {
+          identity[v] = v;
+        }
+        return identity;
+      case BFS:
+        return bfs(graph);
+      case RCM:
+        return reverseCuthillMcKee(graph);
+      case DEGREE:
+        return byDegree(graph);
+      case GORDER:
+        return gorder(graph, GORDER_WINDOW);
+      default:
+        throw new UnsupportedOperationException(ordering + " node ordering is not implemented");
+    }
+  }
+
+  /**
+   * @return the mean distance between the indices of the two ends of an
+   * arc, lower means the colors read for a node are closer together
+   */
+  public static double meanArcDistance(Graph graph) {
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    long sum = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+        sum += Math.abs(adjacency.get(i) - v);
+      }
+    }
+    return graph.numArcs() == 0 ? 0 : (double) sum / graph.numArcs();
+  }
+
+  /**
+   * Breadth first search from the lowest unvisited index, one component
+   * after the other, neighbours in adjacency order.
+   */
+  static int[] bfs(Graph graph) {
+    int n = graph.size();
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int[] order = new int[n];
+    boolean[] visited = new boolean[n];
+    int tail = 0;
+    for (int start = 0; start < n; start++) {
+      if (visited[start]) {
+        continue;
+      }
+      visited[start] = true;
+      int head = tail;
+      order[tail++] = start;
+      while (head < tail) {
+        int v = order[head++];
+        for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+          int u = adjacency.get(i);
+          if (!visited[u]) {
+            visited[u] = true;
+            order[tail++] = u;
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Cuthill-McKee from the lowest degree unvisited node of every
+   * component, visiting the new neighbours of a node by ascending degree,
+   * reversed at the end.
+   */
+  static int[] reverseCuthillMcKee(Graph graph) {
+    int n = graph.size();
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int[] byAscendingDegree = byDegree(graph);
+    reverse(byAscendingDegree);
+
+    int[] order = new int[n];
+    boolean[] visited = new boolean[n];
+    long[] keys = new long[Math.max(maxDegree(graph), 1)];
+    int tail = 0;
+    for (int start : byAscendingDegree) {
+      if (visited[start]) {
+        continue;
+      }
+      visited[start] = true;
+      int head = tail;
+      order[tail++] = start;
+      while (head < tail) {
+        int v = order[head++];
+        int count = 0;
+        for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+          int u = adjacency.get(i);
+          if (!visited[u]) {
+            visited[u] = true;
+            keys[count++] = ((long) graph.getDegree(u) << 32) | u;
+          }
+        }
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < count; i++) {
+          order[tail++] = (int) keys[i];
+        }
+      }
+    }
+    reverse(order);
+    return order;
+  }
+
+  /**
+   * Descending degree, ties by index.
+   */
+  static int[] byDegree(Graph graph) {
+    int n = graph.size();
+    int max = maxDegree(graph);
+    long[] keys = new long[n];
+    for (int v = 0; v < n; v++) {
+      keys[v] = ((long) (max - graph.getDegree(v)) << 32) | v;
+    }
+    Arrays.sort(keys);
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = (int) keys[i];
+    }
+    return order;
+  }
+
+  /**
+   * Greedy Gorder. The score of a node counts its neighbours among the
+   * last window placed nodes plus the neighbours it shares with them; the
+   * next node is the one with the highest score. Shared neighbours are
+   * not counted through hubs, whose neighbourhoods would make every
+   * placement touch most of the graph. When no node scores, the highest
+   * degree node not yet placed starts a new run.
+   */
+  static int[] gorder(Graph graph, int window) {
+    int n = graph.size();
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    int hubDegree = Math.max(16, (int) Math.sqrt(n));
+    int[] byDegree = byDegree(graph);
+    int nextByDegree = 0;
+
+    int[] order = new int[n];
+    int[] score = new int[n];
+    boolean[] placed = new boolean[n];
+    ScoreHeap heap = new ScoreHeap(n);
+    for (int i = 0; i < n; i++) {
+      int v = -1;
+      while (!heap.isEmpty()) {
+        long top = heap.poll();
+        int candidate = (int) top;
+        if (!placed[candidate] && score[candidate] == (int) (top >>> 32) && score[candidate] > 0) {
+          v = candidate;
+          break;
+        }
+      }
+      if (v == -1) {
+        while (placed[byDegree[nextByDegree]]) {
+          nextByDegree++;
+        }
+        v = byDegree[nextByDegree];
+      }
+      order[i] = v;
+      placed[v] = true;
+
+      update(v, 1, offsets, adjacency, hubDegree, score, placed, heap);
+      if (i >= window) {
+        update(order[i - window], -1, offsets, adjacency, hubDegree, score, placed, heap);
+      }
+      if (heap.size() > 8 * n + 1024) {
+        heap.rebuild(score, placed);
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Adds change to the score of the unplaced neighbours of v and of the
+   * unplaced nodes sharing a neighbour with v.
+   */
+  private static void update(int v, int change, IntArray offsets, IntArray adjacency, int hubDegree,
+                             int[] score, boolean[] placed, ScoreHeap heap) {
+    for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+      int u = adjacency.get(i);
+      if (!placed[u]) {
+        score[u] += change;
+        heap.add(score[u], u);
+      }
+      if (offsets.get(u + 1) - offsets.get(u) > hubDegree) {
+        continue;
+      }
+      for (int j = offsets.get(u); j < offsets.get(u + 1); j++) {
+        int w = adjacency.get(j);
+        if (w != v && !placed[w]) {
+          score[w] += change;
+          heap.add(score[w], w);
+        }
+      }
+    }
+  }
+
+  private static int maxDegree(Graph graph) {
+    int max = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      max = Math.max(max, graph.getDegree(v));
+    }
+    return max;
+  }
+
+  private static void reverse(int[] values) {
+    for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+      int t = values[i];
+      values[i] = values[j];
+      values[j] = t;
+    }
+  }
+
+  /**
+   * Binary max-heap of (score, node) pairs packed in longs. Entries are
+   * never updated in place: a changed score is added again and outdated
+   * entries are skipped when polled.
+   */
+  private static class ScoreHeap {
+    private long[] entries;
+    private int size;
+
+    ScoreHeap(int initialCapacity) {
+      entries = new long[Math.max(initialCapacity, 16)];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void add(int score, int node) {
+      if (score <= 0) {
+        return;
+      }
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+      }
+      long entry = ((long) score << 32) | node;
+      int i = size++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (entries[parent] >= entry) {
+          break;
+        }
+        entries[i] = entries[parent];
+        i = parent;
+      }
+      entries[i] = entry;
+    }
+
+    long poll() {
+      long top = entries[0];
+      long last = entries[--size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && entries[child + 1] > entries[child]) {
+          child++;
+        }
+        if (entries[child] <= last) {
+          break;
+        }
+        entries[i] = entries[child];
+        i = child;
+      }
+      entries[i] = last;
+      return top;
+    }
+
+    /**
+     * Drops the outdated entries, one entry per scoring unplaced node.
+     */
+    void rebuild(int[] score, boolean[] placed) {
+      size = 0;
+      for (int v = 0; v < score.length; v++) {
+        if (!placed[v] && score[v] > 0) {
+          add(score[v], v);
+        }
+      }
+    }
+  }
+}
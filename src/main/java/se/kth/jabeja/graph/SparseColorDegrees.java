@@ -0,0 +1,91 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Color degrees stored per node as (color, count) slots. A node cannot see
+ * more distinct colors than it has neighbours, so node v gets
+ * min(degree(v), k) slots and the whole structure is bounded by the
+ * adjacency size regardless of k. Lookups scan the slots of the node.
+ */
+class SparseColorDegrees extends ColorDegrees {
+  private final int[] slotOffsets;
+  private final int[] slotColors;
+  private final int[] slotCounts;
+
+  SparseColorDegrees(Graph graph, int numColors) {
+    super(graph, numColors);
+    int n = graph.size();
+    slotOffsets = new int[n + 1];
+    for (int v = 0; v < n; v++) {
+      slotOffsets[v + 1] = slotOffsets[v] + Math.min(graph.getDegree(v), numColors);
+    }
+    slotColors = new int[slotOffsets[n]];
+    slotCounts = new int[slotOffsets[n]];
+  }
+
+  @Override
+  public int get(int v, int color) {
+    for (int s = slotOffsets[v]; s < slotOffsets[v + 1]; s++) {
+      if (slotColors[s] == color) {
+        return slotCounts[s];
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  protected void clear() {
+    Arrays.fill(slotColors, -1);
+    Arrays.fill(slotCounts, 0);
+  }
+
+  @Override
+  protected void increment(int v, int color) {
+    int free = -1;
+    for (int s = slotOffsets[v]; s < slotOffsets[v + 1]; s++) {
+      if (slotColors[s] == color) {
+        slotCounts[s]++;
+        return;
+      }
+      if (free == -1 && slotCounts[s] == 0) {
+        free = s;
+      }
+    }
+    if (free == -1) {
+      throw new IllegalStateException("No free color slot for node " + v);
+    }
+    slotColors[free] = color;
+    slotCounts[free] = 1;
+  }
+
+  @Override
+  protected void add(int v, int color, int amount) {
+    int free = -1;
+    for (int s = slotOffsets[v]; s < slotOffsets[v + 1]; s++) {
+      if (slotColors[s] == color) {
+        slotCounts[s] += amount;
+        return;
+      }
+      if (free == -1 && slotCounts[s] == 0) {
+        free = s;
+      }
+    }
+    if (free == -1 || amount < 0) {
+      throw new IllegalStateException("No free color slot for node " + v);
+    }
+    slotColors[free] = color;
+    slotCounts[free] = amount;
+  }
+
+  @Override
+  protected void decrement(int v, int color) {
+    for (int s = slotOffsets[v]; s < slotOffsets[v + 1]; s++) {
+      if (slotColors[s] == color) {
+        slotCounts[s]--;
+        return;
+      }
+    }
+    throw new IllegalStateException("Node " + v + " has no neighbour of color " + color);
+  }
+}
@@ -0,0 +1,70 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Append-only log of the color swaps done in the current round, stored
+ * as (p, q, oldColorP, oldColorQ) quadruples in one int array.
+ *
+ * Rolling a round back walks the log in reverse, so its cost depends on
+ * the number of swaps in the round and not on the size of the graph.
+ */
+public class SwapJournal {
+  private static final int ENTRY_SIZE = 4;
+
+  private int[] entries;
+  private int size;
+
+  public SwapJournal() {
+    this(1024);
+  }
+
+  public SwapJournal(int initialCapacity) {
+    this.entries = new int[Math.max(initialCapacity, 1) * ENTRY_SIZE];
+  }
+
+  /**
+   * Records a swap between p and q, with the colors they had before it.
+   */
+  public void record(int p, int q, int oldColorP, int oldColorQ) {
+    int i = size * ENTRY_SIZE;
+    if (i == entries.length) {
+      entries = Arrays.copyOf(entries, entries.length * 2);
+    }
+    entries[i] = p;
+    entries[i + 1] = q;
+    entries[i + 2] = oldColorP;
+    entries[i + 3] = oldColorQ;
+    size++;
+  }
+
+  /**
+   * @return number of recorded swaps
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getP(int entry) {
+    return entries[entry * ENTRY_SIZE];
+  }
+
+  public int getQ(int entry) {
+    return entries[entry * ENTRY_SIZE + 1];
+  }
+
+  public int getOldColorP(int entry) {
+    return entries[entry * ENTRY_SIZE + 2];
+  }
+
+  public int getOldColorQ(int entry) {
+    return entries[entry * ENTRY_SIZE + 3];
+  }
+
+  /**
+   * Forgets all recorded swaps, keeping the allocated capacity.
+   */
+  public void clear() {
+    size = 0;
+  }
+}
@@ -0,0 +1,177 @@
+package se.kth.jabeja.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Hands round records to a background thread that writes them to a sink in
+ * batches. The sink stays open until the writer is closed, and it is
+ * flushed once per batch instead of once per record.
+ *
+ * The queue is bounded, so a slow disk eventually blocks {@link #write}
+ * instead of buffering an unbounded number of rounds. A failure of the
+ * sink is rethrown by the next call to {@link #write} or by {@link #close}.
+ */
+public class AsyncRoundWriter implements Closeable {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * Queued after the last record to stop the writer thread.
+   */
+  private static final RoundRecord END = new RoundRecord(-1, 0, 0, 0, 0, 0);
+  /**
+   * Queued by {@link #sync()}, answered once everything before it is flushed.
+   */
+  private static final RoundRecord SYNC = new RoundRecord(-2, 0, 0, 0, 0, 0);
+
+  private final RoundSink sink;
+  private final BlockingQueue<RoundRecord> queue;
+  private final Thread thread;
+  private final Semaphore synced = new Semaphore(0);
+  private volatile IOException failure;
+  private boolean closed;
+
+  public AsyncRoundWriter(RoundSink sink) {
+    this(sink, DEFAULT_CAPACITY);
+  }
+
+  public AsyncRoundWriter(RoundSink sink, int capacity) {
+    this.sink = sink;
+    this.queue = new ArrayBlockingQueue<RoundRecord>(capacity);
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "round-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Queues a record, blocking while the queue is full.
+   *
+   * @throws IOException if the sink failed to write an earlier record
+   */
+  public void write(RoundRecord record) throws IOException {
+    checkFailure();
+    if (closed) {
+      throw new IOException("Round writer is closed");
+    }
+    put(record);
+  }
+
+  /**
+   * Waits until all records queued so far are written and flushed.
+   *
+   * @throws IOException if the sink failed to write
+   */
+  public void sync() throws IOException {
+    checkFailure();
+    if (closed) {
+      throw new IOException("Round writer is closed");
+    }
+    put(SYNC);
+    try {
+      synced.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while syncing the round writer", e);
+    }
+    checkFailure();
+  }
+
+  /**
+   * Writes the queued records, closes the sink and waits for the writer
+   * thread to finish.
+   *
+   * @throws IOException if the sink failed to write or close
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    put(END);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while closing the round writer", e);
+    }
+    checkFailure();
+  }
+
+  private void put(RoundRecord record) throws IOException {
+    try {
+      queue.put(record);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while queueing a round", e);
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Unable to write the round results", failure);
+    }
+  }
+
+  private void drain() {
+    List<RoundRecord> batch = new ArrayList<RoundRecord>();
+    boolean ended = false;
+    try {
+      while (!ended) {
+        batch.add(queue.take());
+        queue.drainTo(batch);
+        // END is queued last, so once taken it ends the batch
+        ended = batch.get(batch.size() - 1) == END;
+        for (RoundRecord record : batch) {
+          if (record == END) {
+            break;
+          }
+          if (record == SYNC) {
+            sink.flush();
+            synced.release();
+            continue;
+          }
+          sink.write(record);
+        }
+        batch.clear();
+        sink.flush();
+      }
+    } catch (IOException e) {
+      failure = e;
+      synced.release(Integer.MAX_VALUE / 2);
+      if (!ended) {
+        // keep taking records so producers never block on a dead writer
+        drainUntilEnd();
+      }
+    } catch (InterruptedException e) {
+      failure = new IOException("Round writer interrupted", e);
+    } finally {
+      try {
+        sink.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+
+  private void drainUntilEnd() {
+    try {
+      while (queue.take() != END) {
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
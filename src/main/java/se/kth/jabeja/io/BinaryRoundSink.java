@@ -0,0 +1,57 @@
+package se.kth.jabeja.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed size little-endian records of {@value #RECORD_BYTES} bytes:
+ * int round, int edge cut, int swaps, int migrations, float temperature,
+ * long elapsed nanos.
+ */
+class BinaryRoundSink implements RoundSink {
+  static final int RECORD_BYTES = 28;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_BYTES * 2048).order(ByteOrder.LITTLE_ENDIAN);
+
+  BinaryRoundSink(File path, boolean append) throws IOException {
+    file = new RandomAccessFile(path, "rw");
+    if (!append) {
+      file.setLength(0);
+    }
+    channel = file.getChannel();
+    channel.position(channel.size());
+  }
+
+  @Override
+  public void write(RoundRecord r) throws IOException {
+    if (buf.remaining() < RECORD_BYTES) {
+      flush();
+    }
+    buf.putInt(r.round).putInt(r.edgeCut).putInt(r.swaps).putInt(r.migrations)
+            .putFloat(r.temperature).putLong(r.elapsedNanos);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    buf.flip();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    buf.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      file.close();
+    }
+  }
+}
@@ -3,12 +3,18 @@ package se.kth.jabeja.io;
 import org.apache.log4j.Logger;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
+import se.kth.jabeja.Sweep;
 import se.kth.jabeja.config.Config;
 import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.Matching;
+import se.kth.jabeja.config.NodeOrdering;
+import se.kth.jabeja.config.NodeSchedule;
 import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.OutputFormat;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.List;
 
 /**
  * Created by salman on 10/25/16.
@@ -43,6 +49,48 @@ public class CLI {
   @Option(name = "-randNeighborsSampleSize", usage = "Number of random neighbors sample size.")
   private int randNeighborsSampleSize = 3;
 
+  @Option(name = "-threads", usage = "Number of threads running each round. 1 runs the sequential algorithm.")
+  private int THREADS = 1;
+
+  @Option(name = "-workers", usage = "Number of worker processes on this machine, each owning a part of the nodes. 0 runs in this process.")
+  private int WORKERS = 0;
+
+  @Option(name = "-convergenceWindow", usage = "Stop when the edge cut has not improved for this many rounds. 0 never stops early.")
+  private int CONVERGENCE_WINDOW = 0;
+
+  @Option(name = "-minSwapRate", usage = "Stop when T is 1 and a round makes fewer swaps per node than this. 0 never stops early.")
+  private float MIN_SWAP_RATE = 0;
+
+  @Option(name = "-timeBudget", usage = "Stop after this many seconds. 0 means no limit.")
+  private float TIME_BUDGET = 0;
+
+  @Option(name = "-checkpointRounds", usage = "Write a checkpoint every this many rounds. 0 writes none.")
+  private int CHECKPOINT_ROUNDS = 0;
+
+  @Option(name = "-checkpointSeconds", usage = "Write a checkpoint every this many seconds. 0 writes none.")
+  private float CHECKPOINT_SECONDS = 0;
+
+  @Option(name = "-resume", usage = "Continue from the checkpoint of a run with the same parameters.")
+  private boolean RESUME = false;
+
+  @Option(name = "-sweepTemp", usage = "Comma separated temperatures to sweep, in one process on one loaded graph.")
+  private String SWEEP_TEMP = null;
+
+  @Option(name = "-sweepDelta", usage = "Comma separated deltas to sweep.")
+  private String SWEEP_DELTA = null;
+
+  @Option(name = "-sweepAlpha", usage = "Comma separated alphas to sweep.")
+  private String SWEEP_ALPHA = null;
+
+  @Option(name = "-sweepUniformRandSampleSize", usage = "Comma separated uniform random sample sizes to sweep.")
+  private String SWEEP_UNIFORM_RAND_SAMPLE_SIZE = null;
+
+  @Option(name = "-sweepRandNeighborsSampleSize", usage = "Comma separated random neighbors sample sizes to sweep.")
+  private String SWEEP_RAND_NEIGHBORS_SAMPLE_SIZE = null;
+
+  @Option(name = "-sweepParallelism", usage = "Number of sweep variants running at the same time. Defaults to the number of processors divided by -threads.")
+  private int SWEEP_PARALLELISM = 0;
+
   @Option(name = "-graphInitColorSelectionPolicy", usage = "Initial color celection policy. Supported, RANDOM, ROUND_ROBIN, BATCH")
   private String GRAPH_INIT_COLOR_SELECTION_POLICY = "ROUND_ROBIN";
   private GraphInitColorPolicy graphInitColorSelectionPolicy = GraphInitColorPolicy.ROUND_ROBIN;
@@ -51,6 +99,49 @@ public class CLI {
   private String NODE_SELECTION_POLICY = "HYBRID";
   private NodeSelectionPolicy nodeSelectionPolicy = NodeSelectionPolicy.HYBRID;
 
+  @Option(name = "-outputFormat", usage = "Format of the result file. Supported, TSV, JSON, BINARY")
+  private String OUTPUT_FORMAT = "TSV";
+  private OutputFormat outputFormat = OutputFormat.TSV;
+
+  @Option(name = "-nodeOrdering", usage = "Renumbering of the nodes for memory locality. Supported, NONE, BFS, RCM, DEGREE, GORDER")
+  private String NODE_ORDERING = "NONE";
+  private NodeOrdering nodeOrdering = NodeOrdering.NONE;
+
+  @Option(name = "-schedule", usage = "Nodes visited per round. Supported, FULL, ACTIVE")
+  private String NODE_SCHEDULE = "FULL";
+  private NodeSchedule nodeSchedule = NodeSchedule.FULL;
+
+  @Option(name = "-exploration", usage = "Probability that the ACTIVE schedule visits a node it would skip.")
+  private float EXPLORATION = 0.01f;
+
+  @Option(name = "-imbalance", usage = "How much heavier than the average a partition may get, for graphs with node weights.")
+  private float IMBALANCE = 0.03f;
+
+  @Option(name = "-multilevel", usage = "Coarsen the graph, partition the coarsest level and refine back level by level.")
+  private boolean MULTILEVEL = false;
+
+  @Option(name = "-matching", usage = "Matching used to coarsen the graph. Supported, HEAVY_EDGE, RANDOM")
+  private String MATCHING = "HEAVY_EDGE";
+  private Matching matching = Matching.HEAVY_EDGE;
+
+  @Option(name = "-coarsestSize", usage = "Stop coarsening at this many nodes. 0 uses 20 per partition, at least 100.")
+  private int COARSEST_SIZE = 0;
+
+  @Option(name = "-refineRounds", usage = "Rounds run on every level finer than the coarsest.")
+  private int REFINE_ROUNDS = 20;
+
+  @Option(name = "-offHeap", usage = "Map the graph from its binary cache instead of reading it onto the heap.")
+  private boolean OFF_HEAP = false;
+
+  @Option(name = "-partition", usage = "Partition file an incremental run starts from, see -updates.")
+  private String PARTITION = null;
+
+  @Option(name = "-updates", usage = "Apply these graph updates to the graph and its -partition, and refine only around them.")
+  private String UPDATES = null;
+
+  @Option(name = "-hops", usage = "Refine the nodes within this many hops of the updated nodes.")
+  private int HOPS = 2;
+
   @Option(name = "-graph", usage = "Location of the input graph.")
   private static String GRAPH = "./graphs/ws-250.graph";
 
@@ -83,6 +174,120 @@ public class CLI {
         throw new IllegalArgumentException("Node selection policy is not supported");
       }
 
+      if (OUTPUT_FORMAT.compareToIgnoreCase(OutputFormat.TSV.toString()) == 0) {
+        outputFormat = OutputFormat.TSV;
+      } else if (OUTPUT_FORMAT.compareToIgnoreCase(OutputFormat.JSON.toString()) == 0) {
+        outputFormat = OutputFormat.JSON;
+      } else if (OUTPUT_FORMAT.compareToIgnoreCase(OutputFormat.BINARY.toString()) == 0) {
+        outputFormat = OutputFormat.BINARY;
+      } else {
+        throw new IllegalArgumentException("Output format is not supported");
+      }
+
+      if (NODE_ORDERING.compareToIgnoreCase(NodeOrdering.NONE.toString()) == 0) {
+        nodeOrdering = NodeOrdering.NONE;
+      } else if (NODE_ORDERING.compareToIgnoreCase(NodeOrdering.BFS.toString()) == 0) {
+        nodeOrdering = NodeOrdering.BFS;
+      } else if (NODE_ORDERING.compareToIgnoreCase(NodeOrdering.RCM.toString()) == 0) {
+        nodeOrdering = NodeOrdering.RCM;
+      } else if (NODE_ORDERING.compareToIgnoreCase(NodeOrdering.DEGREE.toString()) == 0) {
+        nodeOrdering = NodeOrdering.DEGREE;
+      } else if (NODE_ORDERING.compareToIgnoreCase(NodeOrdering.GORDER.toString()) == 0) {
+        nodeOrdering = NodeOrdering.GORDER;
+      } else {
+        throw new IllegalArgumentException("Node ordering is not supported");
+      }
+
+      if (NODE_SCHEDULE.compareToIgnoreCase(NodeSchedule.FULL.toString()) == 0) {
+        nodeSchedule = NodeSchedule.FULL;
+      } else if (NODE_SCHEDULE.compareToIgnoreCase(NodeSchedule.ACTIVE.toString()) == 0) {
+        nodeSchedule = NodeSchedule.ACTIVE;
+      } else {
+        throw new IllegalArgumentException("Node schedule is not supported");
+      }
+
+      if (MATCHING.compareToIgnoreCase(Matching.HEAVY_EDGE.toString()) == 0) {
+        matching = Matching.HEAVY_EDGE;
+      } else if (MATCHING.compareToIgnoreCase(Matching.RANDOM.toString()) == 0) {
+        matching = Matching.RANDOM;
+      } else {
+        throw new IllegalArgumentException("Matching is not supported");
+      }
+
+      if (IMBALANCE < 0) {
+        throw new IllegalArgumentException("Imbalance must not be negative");
+      }
+
+      if (COARSEST_SIZE < 0 || REFINE_ROUNDS < 0) {
+        throw new IllegalArgumentException("Coarsest size and refine rounds must not be negative");
+      }
+
+      if (MULTILEVEL && (WORKERS > 0 || RESUME || isSweep())) {
+        throw new IllegalArgumentException("Multilevel runs do not support workers, resuming or sweeps");
+      }
+
+      if ((PARTITION == null) != (UPDATES == null)) {
+        throw new IllegalArgumentException("Incremental runs need both a partition and updates");
+      }
+
+      if (isIncremental() && (MULTILEVEL || WORKERS > 0 || RESUME || isSweep() || nodeOrdering != NodeOrdering.NONE)) {
+        throw new IllegalArgumentException("Incremental runs do not support multilevel, workers, resuming, sweeps or node ordering");
+      }
+
+      if (HOPS < 0) {
+        throw new IllegalArgumentException("Hops must not be negative");
+      }
+
+      if (EXPLORATION < 0 || EXPLORATION > 1) {
+        throw new IllegalArgumentException("Exploration probability must be between 0 and 1");
+      }
+
+      if (THREADS < 1) {
+        throw new IllegalArgumentException("Number of threads must be at least 1");
+      }
+
+      if (WORKERS < 0) {
+        throw new IllegalArgumentException("Number of workers must not be negative");
+      }
+
+      if (WORKERS > 0 && nodeOrdering != NodeOrdering.NONE) {
+        throw new IllegalArgumentException("Workers read the graph in file order, node ordering is not supported with them");
+      }
+
+      if (WORKERS > 0 && nodeSchedule != NodeSchedule.FULL) {
+        throw new IllegalArgumentException("Workers visit every node, the ACTIVE schedule is not supported with them");
+      }
+
+      if (WORKERS > 0 && (CONVERGENCE_WINDOW > 0 || MIN_SWAP_RATE > 0 || TIME_BUDGET > 0)) {
+        throw new IllegalArgumentException("Workers run every round, stopping criteria are not supported with them");
+      }
+
+      if (WORKERS > 0 && (CHECKPOINT_ROUNDS > 0 || CHECKPOINT_SECONDS > 0 || RESUME)) {
+        throw new IllegalArgumentException("Workers do not write checkpoints, checkpointing and resuming are not supported with them");
+      }
+
+      if (WORKERS > 0 && isSweep()) {
+        throw new IllegalArgumentException("Workers run a single configuration, sweeps are not supported with them");
+      }
+
+      if (CONVERGENCE_WINDOW < 0 || MIN_SWAP_RATE < 0 || TIME_BUDGET < 0) {
+        throw new IllegalArgumentException("Stopping criteria must not be negative");
+      }
+
+      if (CHECKPOINT_ROUNDS < 0 || CHECKPOINT_SECONDS < 0) {
+        throw new IllegalArgumentException("Checkpoint intervals must not be negative");
+      }
+
+      if (SWEEP_PARALLELISM < 0) {
+        throw new IllegalArgumentException("Sweep parallelism must not be negative");
+      }
+      // fail on malformed lists before the graph is read
+      parseFloats(SWEEP_TEMP);
+      parseFloats(SWEEP_DELTA);
+      parseFloats(SWEEP_ALPHA);
+      parseInts(SWEEP_UNIFORM_RAND_SAMPLE_SIZE);
+      parseInts(SWEEP_RAND_NEIGHBORS_SAMPLE_SIZE);
+
     } catch (Exception e) {
       logger.error(e.getMessage());
       parser.printUsage(System.err);
@@ -110,6 +315,85 @@ public class CLI {
             .setNodeSelectionPolicy(nodeSelectionPolicy)
             .setGraphInitialColorPolicy(graphInitColorSelectionPolicy)
             .setOutputDir(OUTPUT_DIR)
-            .setAlpha(ALPHA);
+            .setOutputFormat(outputFormat)
+            .setAlpha(ALPHA)
+            .setThreads(THREADS)
+            .setConvergenceWindow(CONVERGENCE_WINDOW)
+            .setMinSwapRate(MIN_SWAP_RATE)
+            .setTimeBudget(TIME_BUDGET)
+            .setWorkers(WORKERS)
+            .setCheckpointRounds(CHECKPOINT_ROUNDS)
+            .setCheckpointSeconds(CHECKPOINT_SECONDS)
+            .setResume(RESUME)
+            .setNodeOrdering(nodeOrdering)
+            .setNodeSchedule(nodeSchedule)
+            .setExplorationProbability(EXPLORATION)
+            .setImbalance(IMBALANCE)
+            .setMultilevel(MULTILEVEL)
+            .setMatching(matching)
+            .setCoarsestSize(COARSEST_SIZE != 0 ? COARSEST_SIZE : Math.max(100, 20 * NUM_PARTITIONS))
+            .setRefineRounds(REFINE_ROUNDS)
+            .setOffHeap(OFF_HEAP)
+            .setPartitionFilePath(PARTITION)
+            .setUpdatesFilePath(UPDATES)
+            .setHops(HOPS);
+  }
+
+  /**
+   * @return whether to update a partition instead of partitioning from scratch
+   */
+  public boolean isIncremental() {
+    return UPDATES != null;
+  }
+
+  /**
+   * @return whether any sweep option was given
+   */
+  public boolean isSweep() {
+    return SWEEP_TEMP != null || SWEEP_DELTA != null || SWEEP_ALPHA != null
+            || SWEEP_UNIFORM_RAND_SAMPLE_SIZE != null || SWEEP_RAND_NEIGHBORS_SAMPLE_SIZE != null;
+  }
+
+  /**
+   * @return number of sweep variants to run at the same time
+   */
+  public int getSweepParallelism() {
+    if (SWEEP_PARALLELISM > 0) {
+      return SWEEP_PARALLELISM;
+    }
+    return Math.max(1, Runtime.getRuntime().availableProcessors() / THREADS);
+  }
+
+  /**
+   * @param base the parsed config
+   * @return the grid of the sweep options, see {@link Sweep#grid}
+   */
+  public List<Config> getSweepVariants(Config base) {
+    return Sweep.grid(base, parseFloats(SWEEP_TEMP), parseFloats(SWEEP_DELTA), parseFloats(SWEEP_ALPHA),
+            parseInts(SWEEP_UNIFORM_RAND_SAMPLE_SIZE), parseInts(SWEEP_RAND_NEIGHBORS_SAMPLE_SIZE));
+  }
+
+  private static float[] parseFloats(String list) {
+    if (list == null) {
+      return null;
+    }
+    String[] parts = list.split(",");
+    float[] values = new float[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Float.parseFloat(parts[i].trim());
+    }
+    return values;
+  }
+
+  private static int[] parseInts(String list) {
+    if (list == null) {
+      return null;
+    }
+    String[] parts = list.split(",");
+    int[] values = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Integer.parseInt(parts[i].trim());
+    }
+    return values;
   }
 }
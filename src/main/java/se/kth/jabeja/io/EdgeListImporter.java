@@ -0,0 +1,343 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts an edge list, one "u v" pair per line like TwitterGraph.net,
+ * into the adjacency list format the engine reads, and optionally its
+ * binary cache.
+ *
+ * Ids may be any sparse 64-bit values. They are relabelled to dense ids
+ * 1..n in ascending order of the original id, and the mapping is written
+ * next to the output, one original id per line. Every edge is added in
+ * both directions, duplicates and self loops are dropped, so nodes that
+ * only have self loops are dropped as well.
+ *
+ * The edges never have to fit in memory: they are sorted externally, with
+ * sorted runs spilled to the temporary directory once the memory budget
+ * is used up. Lines starting with '#' or '%' are comments, ids may be
+ * separated by spaces, tabs or commas, and columns after the second are
+ * ignored.
+ */
+public class EdgeListImporter {
+  final static Logger logger = Logger.getLogger(EdgeListImporter.class);
+
+  public static final String IDS_EXTENSION = ".ids";
+
+  private static final int IO_BUFFER_BYTES = 1 << 16;
+
+  private final long memoryBytes;
+  private final File tmpDir;
+
+  /**
+   * @param memoryBytes memory for sorting, shared by the two sorts that run at the same time
+   * @param tmpDir      directory of the sorted runs
+   */
+  public EdgeListImporter(long memoryBytes, File tmpDir) {
+    this.memoryBytes = memoryBytes;
+    this.tmpDir = tmpDir;
+  }
+
+  /**
+   * Imports an edge list.
+   *
+   * @param edgeListPath the edge list
+   * @param graphPath    the adjacency list to write, the id mapping is written to graphPath + {@value #IDS_EXTENSION}
+   * @param writeCache   whether to write the binary cache of the output as well
+   */
+  public void importEdgeList(String edgeListPath, String graphPath, boolean writeCache) throws IOException {
+    long start = System.nanoTime();
+    File idsTmp = File.createTempFile("ids", ".tmp", tmpDir);
+    idsTmp.deleteOnExit();
+    ExternalPairSorter byDestination = new ExternalPairSorter(memoryBytes / 2, tmpDir);
+    int numNodes;
+    long numArcs;
+    try {
+      // 1. both directions of every edge, sorted by original (source, destination)
+      ExternalPairSorter bySource = new ExternalPairSorter(memoryBytes / 2, tmpDir);
+      try {
+        long edges = readEdges(edgeListPath, bySource);
+        logger.info(edgeListPath + ". Edges: " + edges + ", sorted runs: " + bySource.getRuns() +
+                ", spilled: " + bySource.getSpilledBytes() + " bytes");
+
+        // 2. dense ids in the order of the sources, keep (destination, dense source)
+        numNodes = 0;
+        numArcs = 0;
+        try (ExternalPairSorter.PairStream arcs = bySource.sort();
+             DataOutputStream ids = new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(idsTmp), IO_BUFFER_BYTES))) {
+          long source = 0;
+          while (arcs.next()) {
+            if (numNodes == 0 || arcs.first() != source) {
+              source = arcs.first();
+              ids.writeLong(source);
+              numNodes++;
+              if (numNodes < 0) {
+                throw new IOException("More than " + Integer.MAX_VALUE + " nodes");
+              }
+            }
+            byDestination.add(arcs.second(), numNodes - 1);
+            numArcs++;
+          }
+        }
+      } finally {
+        bySource.close();
+      }
+      if (numArcs > Integer.MAX_VALUE) {
+        throw new IOException(numArcs + " arcs do not fit the graph format");
+      }
+
+      // 3. the destinations in ascending order are the dense ids in order,
+      // so the arcs sorted by destination are the adjacency lists in order
+      writeGraph(byDestination, idsTmp, graphPath, numNodes, (int) numArcs, writeCache);
+    } finally {
+      byDestination.close();
+      idsTmp.delete();
+    }
+
+    logger.info("Wrote " + graphPath + ". Nodes: " + numNodes + ", Edges: " + numArcs / 2 +
+            ", sorted runs: " + byDestination.getRuns() +
+            ", in " + String.format("%.3f", (System.nanoTime() - start) / 1e9) + " s");
+  }
+
+  private void writeGraph(ExternalPairSorter byDestination, File idsTmp, String graphPath,
+                          int numNodes, int numArcs, boolean writeCache) throws IOException {
+    File cache = GraphCache.cacheFileOf(graphPath);
+    File cacheTmp = new File(cache.getPath() + ".tmp");
+    long adjacencyStart = GraphCache.HEADER_BYTES + 4L * (numNodes + 1);
+
+    try (ExternalPairSorter.PairStream arcs = byDestination.sort();
+         DataInputStream ids = new DataInputStream(new BufferedInputStream(
+                 new FileInputStream(idsTmp), IO_BUFFER_BYTES));
+         Writer graph = new BufferedWriter(new OutputStreamWriter(
+                 new FileOutputStream(graphPath), StandardCharsets.US_ASCII), IO_BUFFER_BYTES);
+         Writer mapping = new BufferedWriter(new OutputStreamWriter(
+                 new FileOutputStream(graphPath + IDS_EXTENSION), StandardCharsets.US_ASCII), IO_BUFFER_BYTES);
+         RandomAccessFile cacheFile = writeCache ? new RandomAccessFile(cacheTmp, "rw") : null) {
+      IntWriter offsets = null;
+      IntWriter adjacency = null;
+      if (cacheFile != null) {
+        cacheFile.setLength(adjacencyStart + 4L * numArcs);
+        offsets = new IntWriter(cacheFile.getChannel(), GraphCache.HEADER_BYTES);
+        adjacency = new IntWriter(cacheFile.getChannel(), adjacencyStart);
+      }
+
+      graph.write(numNodes + " " + numArcs / 2 + "\n");
+      int row = -1;
+      long id = 0;
+      int arc = 0;
+      while (arcs.next()) {
+        if (row < 0 || arcs.first() != id) {
+          if (row >= 0) {
+            graph.write('\n');
+          }
+          id = ids.readLong();
+          row++;
+          if (id != arcs.first()) {
+            throw new IllegalStateException("Node " + arcs.first() + " has no reverse edges");
+          }
+          mapping.write(Long.toString(id));
+          mapping.write('\n');
+          if (offsets != null) {
+            offsets.put(arc);
+          }
+        }
+        int neighbour = (int) arcs.second();
+        graph.write(' ');
+        graph.write(Integer.toString(neighbour + 1));
+        if (adjacency != null) {
+          adjacency.put(neighbour);
+        }
+        arc++;
+      }
+      if (row >= 0) {
+        graph.write('\n');
+      }
+      if (row + 1 != numNodes || arc != numArcs) {
+        throw new IllegalStateException("Wrote " + (row + 1) + " nodes and " + arc + " arcs, expected " +
+                numNodes + " and " + numArcs);
+      }
+      if (offsets != null) {
+        offsets.put(arc);
+        offsets.flush();
+        adjacency.flush();
+      }
+    }
+    if (writeCache) {
+      // finished after the graph file is closed, so the cache is not older than it
+      GraphCache.finish(cacheTmp, cache, numNodes, numArcs / 2, numNodes, numArcs);
+    }
+  }
+
+  /**
+   * Adds both directions of every edge of the file, except self loops.
+   *
+   * @return number of edge lines read
+   */
+  private static long readEdges(String edgeListPath, ExternalPairSorter sorter) throws IOException {
+    long edges = 0;
+    long selfLoops = 0;
+    long line = 1;
+    byte[] buf = new byte[IO_BUFFER_BYTES];
+    try (InputStream in = new FileInputStream(edgeListPath)) {
+      long[] ids = new long[2];
+      int column = 0;
+      int digits = 0;
+      boolean negative = false;
+      boolean comment = false;
+      boolean lineStart = true;
+      long value = 0;
+      int read;
+      boolean end = false;
+      while (!end) {
+        read = in.read(buf);
+        if (read < 0) {
+          // a last line without terminator
+          end = true;
+          buf[0] = '\n';
+          read = 1;
+        }
+        for (int i = 0; i < read; i++) {
+          byte b = buf[i];
+          if (b == '\n') {
+            if (!comment) {
+              if (digits > 0 && column < 2) {
+                ids[column++] = negative ? -value : value;
+              }
+              if (column == 2) {
+                edges++;
+                if (ids[0] == ids[1]) {
+                  selfLoops++;
+                } else {
+                  sorter.add(ids[0], ids[1]);
+                  sorter.add(ids[1], ids[0]);
+                }
+              } else if (column == 1 || digits > 0) {
+                throw new IOException(edgeListPath + ":" + line + " is not an edge");
+              }
+            }
+            line++;
+            column = 0;
+            digits = 0;
+            negative = false;
+            value = 0;
+            comment = false;
+            lineStart = true;
+            continue;
+          }
+          if (comment) {
+            continue;
+          }
+          if (lineStart && (b == '#' || b == '%')) {
+            comment = true;
+            continue;
+          }
+          lineStart = false;
+          if (b == ' ' || b == '\t' || b == ',' || b == '\r') {
+            if (digits > 0 && column < 2) {
+              ids[column++] = negative ? -value : value;
+            }
+            digits = 0;
+            negative = false;
+            value = 0;
+          } else if (column >= 2) {
+            // further columns, e.g. weights or timestamps, are ignored
+          } else if (b >= '0' && b <= '9') {
+            int digit = b - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+              throw new NumberFormatException(edgeListPath + ":" + line + " id out of range");
+            }
+            value = value * 10 + digit;
+            digits++;
+          } else if (b == '-' && digits == 0 && !negative) {
+            negative = true;
+          } else {
+            throw new NumberFormatException(edgeListPath + ":" + line + " unexpected character '" + (char) b + "'");
+          }
+        }
+      }
+    }
+    if (selfLoops > 0) {
+      logger.info("Dropped " + selfLoops + " self loops");
+    }
+    return edges;
+  }
+
+  /**
+   * Buffered little-endian ints written to a channel from a position on.
+   */
+  private static class IntWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER_BYTES * 4).order(ByteOrder.LITTLE_ENDIAN);
+    private long pos;
+
+    IntWriter(FileChannel channel, long pos) {
+      this.channel = channel;
+      this.pos = pos;
+    }
+
+    void put(int v) throws IOException {
+      if (!buf.hasRemaining()) {
+        flush();
+      }
+      buf.putInt(v);
+    }
+
+    void flush() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        pos += channel.write(buf, pos);
+      }
+      buf.clear();
+    }
+  }
+
+  /**
+   * Imports an edge list.
+   *
+   * @param args [-memory MB] [-tmpDir dir] [-noCache] {edge-list} {output-graph}
+   */
+  public static void main(String[] args) throws IOException {
+    long memoryMB = 256;
+    File tmpDir = null;
+    boolean writeCache = true;
+    int i = 0;
+    for (; i < args.length && args[i].startsWith("-"); i++) {
+      if (args[i].equals("-memory") && i + 1 < args.length) {
+        memoryMB = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-tmpDir") && i + 1 < args.length) {
+        tmpDir = new File(args[++i]);
+      } else if (args[i].equals("-noCache")) {
+        writeCache = false;
+      } else {
+        break;
+      }
+    }
+    if (args.length - i != 2) {
+      System.err.println("Usage: EdgeListImporter [-memory MB] [-tmpDir dir] [-noCache] {edge-list} {output-graph}");
+      System.exit(-1);
+    }
+    if (tmpDir == null) {
+      tmpDir = new File(args[i + 1]).getAbsoluteFile().getParentFile();
+    }
+    new EdgeListImporter(memoryMB << 20, tmpDir).importEdgeList(args[i], args[i + 1], writeCache);
+  }
+}
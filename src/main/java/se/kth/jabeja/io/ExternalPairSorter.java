@@ -0,0 +1,361 @@
+package se.kth.jabeja.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts pairs of longs by (first, second) and drops duplicates, in a
+ * bounded amount of memory. Pairs are collected in a buffer; a full buffer
+ * is sorted and spilled to a run file, and the runs are merged when the
+ * pairs are read back. If there are more runs than can be merged at once,
+ * they are merged in several passes.
+ */
+class ExternalPairSorter implements Closeable {
+  private static final int IO_BUFFER_BYTES = 1 << 16;
+  private static final int MAX_FAN_IN = 512;
+  private static final int MIN_BUFFER_PAIRS = 1024;
+  private static final int INSERTION_SORT_PAIRS = 16;
+
+  private final File tmpDir;
+  private final int fanIn;
+  private final long[] buffer;
+  private int size;
+  private final List<File> runs = new ArrayList<File>();
+  private long spilled;
+  private int spills;
+
+  /**
+   * @param memoryBytes bytes for the buffer and the merge, at least 16K pairs worth
+   * @param tmpDir      directory of the run files
+   */
+  ExternalPairSorter(long memoryBytes, File tmpDir) {
+    this.tmpDir = tmpDir;
+    // half for the sort buffer, half for the read buffers of a merge
+    long pairs = Math.max(MIN_BUFFER_PAIRS, memoryBytes / 2 / 16);
+    this.buffer = new long[(int) Math.min(pairs * 2, Integer.MAX_VALUE - 8) & ~1];
+    this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryBytes / 2 / IO_BUFFER_BYTES));
+  }
+
+  void add(long first, long second) throws IOException {
+    if (size == buffer.length) {
+      spill();
+    }
+    buffer[size++] = first;
+    buffer[size++] = second;
+  }
+
+  /**
+   * @return number of sorted runs spilled to disk so far, not counting merge passes
+   */
+  int getRuns() {
+    return spills;
+  }
+
+  /**
+   * @return bytes written to run files, including merge passes
+   */
+  long getSpilledBytes() {
+    return spilled;
+  }
+
+  /**
+   * Sorts what was added. No pairs may be added afterwards.
+   *
+   * @return the sorted distinct pairs, to be closed by the caller
+   */
+  PairStream sort() throws IOException {
+    if (runs.isEmpty()) {
+      int n = sortBuffer();
+      return new BufferStream(buffer, n);
+    }
+    spill();
+    while (runs.size() > fanIn) {
+      List<File> merged = new ArrayList<File>();
+      for (int i = 0; i < runs.size(); i += fanIn) {
+        List<File> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+        if (group.size() == 1) {
+          merged.add(group.get(0));
+          continue;
+        }
+        File run = newRunFile();
+        try (MergeStream in = new MergeStream(new ArrayList<File>(group));
+             DataOutputStream out = openRun(run)) {
+          while (in.next()) {
+            out.writeLong(in.first());
+            out.writeLong(in.second());
+            spilled += 16;
+          }
+        }
+        merged.add(run);
+      }
+      runs.clear();
+      runs.addAll(merged);
+    }
+    List<File> all = new ArrayList<File>(runs);
+    runs.clear();
+    return new MergeStream(all);
+  }
+
+  @Override
+  public void close() {
+    for (File run : runs) {
+      run.delete();
+    }
+    runs.clear();
+  }
+
+  private void spill() throws IOException {
+    int n = sortBuffer();
+    if (n == 0) {
+      return;
+    }
+    File run = newRunFile();
+    try (DataOutputStream out = openRun(run)) {
+      for (int i = 0; i < n; i++) {
+        out.writeLong(buffer[i]);
+      }
+    }
+    spilled += 8L * n;
+    spills++;
+    runs.add(run);
+    size = 0;
+  }
+
+  /**
+   * Sorts the buffer and moves the distinct pairs to its front.
+   *
+   * @return number of longs of the distinct pairs
+   */
+  private int sortBuffer() {
+    int pairs = size / 2;
+    sort(buffer, 0, pairs - 1);
+    int n = 0;
+    for (int i = 0; i < pairs; i++) {
+      long a = buffer[2 * i];
+      long b = buffer[2 * i + 1];
+      if (n == 0 || a != buffer[n - 2] || b != buffer[n - 1]) {
+        buffer[n++] = a;
+        buffer[n++] = b;
+      }
+    }
+    size = n;
+    return n;
+  }
+
+  private File newRunFile() throws IOException {
+    File run = File.createTempFile("pairs", ".run", tmpDir);
+    run.deleteOnExit();
+    return run;
+  }
+
+  private static DataOutputStream openRun(File run) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER_BYTES));
+  }
+
+  private static int compare(long a1, long b1, long a2, long b2) {
+    if (a1 != a2) {
+      return a1 < a2 ? -1 : 1;
+    }
+    return b1 < b2 ? -1 : (b1 == b2 ? 0 : 1);
+  }
+
+  /**
+   * Quicksort of the pairs [lo, hi] of an array of interleaved pairs,
+   * recursing into the smaller side only.
+   */
+  private static void sort(long[] a, int lo, int hi) {
+    while (hi - lo >= INSERTION_SORT_PAIRS) {
+      int mid = (lo + hi) >>> 1;
+      // median of three to the middle
+      if (compare(a[2 * mid], a[2 * mid + 1], a[2 * lo], a[2 * lo + 1]) < 0) swap(a, mid, lo);
+      if (compare(a[2 * hi], a[2 * hi + 1], a[2 * lo], a[2 * lo + 1]) < 0) swap(a, hi, lo);
+      if (compare(a[2 * hi], a[2 * hi + 1], a[2 * mid], a[2 * mid + 1]) < 0) swap(a, hi, mid);
+      long p1 = a[2 * mid];
+      long p2 = a[2 * mid + 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (compare(a[2 * i], a[2 * i + 1], p1, p2) < 0) i++;
+        while (compare(a[2 * j], a[2 * j + 1], p1, p2) > 0) j--;
+        if (i <= j) {
+          swap(a, i++, j--);
+        }
+      }
+      if (j - lo < hi - i) {
+        sort(a, lo, j);
+        lo = i;
+      } else {
+        sort(a, i, hi);
+        hi = j;
+      }
+    }
+    for (int i = lo + 1; i <= hi; i++) {
+      long k1 = a[2 * i];
+      long k2 = a[2 * i + 1];
+      int j = i - 1;
+      while (j >= lo && compare(a[2 * j], a[2 * j + 1], k1, k2) > 0) {
+        a[2 * j + 2] = a[2 * j];
+        a[2 * j + 3] = a[2 * j + 1];
+        j--;
+      }
+      a[2 * j + 2] = k1;
+      a[2 * j + 3] = k2;
+    }
+  }
+
+  private static void swap(long[] a, int i, int j) {
+    long t1 = a[2 * i];
+    long t2 = a[2 * i + 1];
+    a[2 * i] = a[2 * j];
+    a[2 * i + 1] = a[2 * j + 1];
+    a[2 * j] = t1;
+    a[2 * j + 1] = t2;
+  }
+
+  /**
+   * Sorted distinct pairs, read one at a time.
+   */
+  interface PairStream extends Closeable {
+    /**
+     * Advances to the next pair.
+     *
+     * @return false at the end
+     */
+    boolean next() throws IOException;
+
+    long first();
+
+    long second();
+  }
+
+  private static class BufferStream implements PairStream {
+    private final long[] buffer;
+    private final int size;
+    private int pos = -2;
+
+    BufferStream(long[] buffer, int size) {
+      this.buffer = buffer;
+      this.size = size;
+    }
+
+    @Override
+    public boolean next() {
+      pos += 2;
+      return pos < size;
+    }
+
+    @Override
+    public long first() {
+      return buffer[pos];
+    }
+
+    @Override
+    public long second() {
+      return buffer[pos + 1];
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * K-way merge of run files, dropping pairs equal to the previous one.
+   * Deletes the runs when closed.
+   */
+  private static class MergeStream implements PairStream {
+    private final List<File> files;
+    private final PriorityQueue<Run> queue;
+    private final List<Run> open = new ArrayList<Run>();
+    private long first;
+    private long second;
+    private boolean started;
+
+    MergeStream(List<File> files) throws IOException {
+      this.files = files;
+      this.queue = new PriorityQueue<Run>(Math.max(1, files.size()));
+      for (File file : files) {
+        Run run = new Run(file);
+        open.add(run);
+        if (run.advance()) {
+          queue.add(run);
+        }
+      }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        long a = run.first;
+        long b = run.second;
+        if (run.advance()) {
+          queue.add(run);
+        }
+        if (!started || a != first || b != second) {
+          started = true;
+          first = a;
+          second = b;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public long first() {
+      return first;
+    }
+
+    @Override
+    public long second() {
+      return second;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Run run : open) {
+        run.in.close();
+      }
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  private static class Run implements Comparable<Run> {
+    final DataInputStream in;
+    long first;
+    long second;
+
+    Run(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_BYTES));
+    }
+
+    boolean advance() throws IOException {
+      try {
+        first = in.readLong();
+      } catch (EOFException e) {
+        return false;
+      }
+      second = in.readLong();
+      return true;
+    }
+
+    @Override
+    public int compareTo(Run o) {
+      return compare(first, second, o.first, o.second);
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.IntArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of a parsed graph file, so a graph is parsed once and then
+ * mapped straight into the CSR arrays on every later run.
+ *
+ * Layout, all values little-endian:
+ * <pre>
+ *   int  magic "JBG1"
+ *   int  version
+ *   int  header nodes, int header edges   (as written in the text header)
+ *   int  n, int arcs, int flags, int unused
+ *   long CRC32 of everything after the header
+ *   int[n + 1] offsets
+ *   int[arcs]  adjacency
+ *   int[arcs]  edge weights               (only with FLAG_EDGE_WEIGHTS)
+ *   int[n]     node weights               (only with FLAG_NODE_WEIGHTS)
+ *   int[n]     line ids                   (only with FLAG_LINE_IDS)
+ * </pre>
+ *
+ * The offsets, adjacency and edge weights can also be left in the mapped
+ * file, see {@link #read(File, boolean)}, so the topology of a graph
+ * larger than the heap costs the heap nothing.
+ */
+public class GraphCache {
+  final static Logger logger = Logger.getLogger(GraphCache.class);
+
+  public static final String EXTENSION = ".jbg";
+
+  private static final int MAGIC = 0x3147424A; // "JBG1" read as little-endian
+  /**
+   * Version 2 added the edge and node weights. Version 1 caches of weighted
+   * files lack them and are parsed again.
+   */
+  private static final int VERSION = 2;
+  static final int HEADER_BYTES = 40;
+  private static final int FLAG_LINE_IDS = 1;
+  private static final int FLAG_EDGE_WEIGHTS = 2;
+  private static final int FLAG_NODE_WEIGHTS = 4;
+  /**
+   * Largest region mapped at once, mappings are limited to 2GB.
+   */
+  private static final int MAX_MAPPING_INTS = 1 << 28;
+
+  private GraphCache() {
+  }
+
+  /**
+   * @return the cache file belonging to a graph file
+   */
+  public static File cacheFileOf(String graphFilePath) {
+    return new File(graphFilePath + EXTENSION);
+  }
+
+  /**
+   * @return whether the cache of the graph file exists, is newer than it
+   * and has the current version
+   */
+  public static boolean isFresh(String graphFilePath) {
+    File cache = cacheFileOf(graphFilePath);
+    return cache.isFile() && cache.lastModified() >= new File(graphFilePath).lastModified()
+            && hasCurrentVersion(cache);
+  }
+
+  private static boolean hasCurrentVersion(File cache) {
+    try (RandomAccessFile file = new RandomAccessFile(cache, "r")) {
+      byte[] bytes = new byte[8];
+      file.readFully(bytes);
+      ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      return header.getInt() == MAGIC && header.getInt() == VERSION;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Parses a text graph file and writes its cache next to it.
+   *
+   * @return the written cache file
+   */
+  public static File convert(String graphFilePath, int threads) throws IOException {
+    GraphFile graph = new MappedGraphReader(threads).read(graphFilePath);
+    File cache = cacheFileOf(graphFilePath);
+    write(graph, cache);
+    return cache;
+  }
+
+  /**
+   * Writes the cache to a temporary file and renames it into place, so a
+   * reader never sees a partial cache.
+   */
+  static void write(GraphFile graph, File cache) throws IOException {
+    File tmp = new File(cache.getPath() + ".tmp");
+    int n = graph.size();
+    int arcs = graph.adjacency.length();
+    int flags = (graph.lineIds != null ? FLAG_LINE_IDS : 0)
+            | (graph.edgeWeights != null ? FLAG_EDGE_WEIGHTS : 0)
+            | (graph.nodeWeights != null ? FLAG_NODE_WEIGHTS : 0);
+
+    try (RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+         FileChannel channel = file.getChannel()) {
+      file.setLength(0);
+      CRC32 crc = new CRC32();
+      long pos = HEADER_BYTES;
+      pos = writeInts(channel, pos, graph.offsets, crc);
+      pos = writeInts(channel, pos, graph.adjacency, crc);
+      if (graph.edgeWeights != null) {
+        pos = writeInts(channel, pos, graph.edgeWeights, crc);
+      }
+      if (graph.nodeWeights != null) {
+        pos = writeInts(channel, pos, graph.nodeWeights, crc);
+      }
+      if (graph.lineIds != null) {
+        writeInts(channel, pos, graph.lineIds, crc);
+      }
+
+      writeHeader(channel, graph.headerNodes, graph.headerEdges, n, arcs, flags, crc.getValue());
+    }
+    moveIntoPlace(tmp, cache);
+  }
+
+  /**
+   * Completes a cache whose body, the offsets followed by the adjacency,
+   * was written by the caller to a temporary file, starting at
+   * {@link #HEADER_BYTES}: checksums the body, writes the header and
+   * renames the file into place.
+   */
+  static void finish(File tmp, File cache, int headerNodes, int headerEdges, int n, int arcs) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+         FileChannel channel = file.getChannel()) {
+      long expected = HEADER_BYTES + 4L * (n + 1) + 4L * arcs;
+      if (channel.size() != expected) {
+        throw new IOException(tmp + " has " + channel.size() + " bytes, expected " + expected);
+      }
+      CRC32 crc = new CRC32();
+      ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+      long pos = HEADER_BYTES;
+      while (pos < expected) {
+        buf.clear();
+        int read = channel.read(buf, pos);
+        if (read <= 0) {
+          throw new IOException("Unexpected end of " + tmp);
+        }
+        buf.flip();
+        crc.update(buf);
+        pos += read;
+      }
+      writeHeader(channel, headerNodes, headerEdges, n, arcs, 0, crc.getValue());
+    }
+    moveIntoPlace(tmp, cache);
+  }
+
+  private static void writeHeader(FileChannel channel, int headerNodes, int headerEdges, int n, int arcs,
+                                  int flags, long checksum) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION)
+            .putInt(headerNodes).putInt(headerEdges)
+            .putInt(n).putInt(arcs).putInt(flags).putInt(0)
+            .putLong(checksum);
+    header.flip();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+    channel.force(false);
+  }
+
+  private static void moveIntoPlace(File tmp, File cache) throws IOException {
+    if (!tmp.renameTo(cache)) {
+      cache.delete();
+      if (!tmp.renameTo(cache)) {
+        throw new IOException("Unable to move " + tmp + " to " + cache);
+      }
+    }
+  }
+
+  /**
+   * Maps a cache file into the CSR arrays.
+   *
+   * @throws IOException if the file is not a valid cache or its checksum does not match
+   */
+  static GraphFile read(File cache) throws IOException {
+    return read(cache, false);
+  }
+
+  /**
+   * Maps a cache file into the CSR arrays.
+   *
+   * @param offHeap whether the offsets, adjacency and edge weights stay in
+   *                the read-only mapping instead of being copied onto the heap
+   * @throws IOException if the file is not a valid cache or its checksum does not match
+   */
+  static GraphFile read(File cache, boolean offHeap) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(cache, "r");
+         FileChannel channel = file.getChannel()) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException(cache + " is not a graph cache");
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException(cache + " is not a graph cache of version " + VERSION);
+      }
+      int headerNodes = header.getInt();
+      int headerEdges = header.getInt();
+      int n = header.getInt();
+      int arcs = header.getInt();
+      int flags = header.getInt();
+      header.getInt();
+      long checksum = header.getLong();
+
+      boolean hasEdgeWeights = (flags & FLAG_EDGE_WEIGHTS) != 0;
+      boolean hasNodeWeights = (flags & FLAG_NODE_WEIGHTS) != 0;
+      long expected = HEADER_BYTES + 4L * (n + 1) + 4L * arcs
+              + (hasEdgeWeights ? 4L * arcs : 0)
+              + (hasNodeWeights ? 4L * n : 0)
+              + ((flags & FLAG_LINE_IDS) != 0 ? 4L * n : 0);
+      if (channel.size() != expected) {
+        throw new IOException(cache + " has " + channel.size() + " bytes, expected " + expected);
+      }
+
+      CRC32 crc = new CRC32();
+      long pos = HEADER_BYTES;
+      IntArray offsets;
+      IntArray adjacency;
+      IntArray edgeWeights = null;
+      if (offHeap) {
+        offsets = mapInts(channel, pos, n + 1, crc);
+        pos += 4L * (n + 1);
+        adjacency = mapInts(channel, pos, arcs, crc);
+        pos += 4L * arcs;
+        if (hasEdgeWeights) {
+          edgeWeights = mapInts(channel, pos, arcs, crc);
+          pos += 4L * arcs;
+        }
+      } else {
+        offsets = IntArray.wrap(new int[n + 1]);
+        pos = readInts(channel, pos, offsets.array(), crc);
+        adjacency = IntArray.wrap(new int[arcs]);
+        pos = readInts(channel, pos, adjacency.array(), crc);
+        if (hasEdgeWeights) {
+          edgeWeights = IntArray.wrap(new int[arcs]);
+          pos = readInts(channel, pos, edgeWeights.array(), crc);
+        }
+      }
+      int[] nodeWeights = null;
+      if (hasNodeWeights) {
+        nodeWeights = new int[n];
+        pos = readInts(channel, pos, nodeWeights, crc);
+      }
+      int[] lineIds = null;
+      if ((flags & FLAG_LINE_IDS) != 0) {
+        lineIds = new int[n];
+        readInts(channel, pos, lineIds, crc);
+      }
+      if (crc.getValue() != checksum) {
+        throw new IOException(cache + " is corrupt, checksum mismatch");
+      }
+      return new GraphFile(headerNodes, headerEdges, offsets, adjacency, edgeWeights, nodeWeights, lineIds);
+    }
+  }
+
+  private static long writeInts(FileChannel channel, long pos, int[] values, CRC32 crc) throws IOException {
+    return writeInts(channel, pos, IntArray.wrap(values), crc);
+  }
+
+  private static long writeInts(FileChannel channel, long pos, IntArray values, CRC32 crc) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    int written = 0;
+    while (written < values.length()) {
+      int count = Math.min(values.length() - written, buf.capacity() / 4);
+      buf.clear();
+      if (values.array() != null) {
+        buf.asIntBuffer().put(values.array(), written, count);
+      } else {
+        IntBuffer ints = buf.asIntBuffer();
+        for (int i = 0; i < count; i++) {
+          ints.put(i, values.get(written + i));
+        }
+      }
+      buf.limit(count * 4);
+      crc.update(buf.duplicate());
+      while (buf.hasRemaining()) {
+        pos += channel.write(buf, pos);
+      }
+      written += count;
+    }
+    return pos;
+  }
+
+  private static long readInts(FileChannel channel, long pos, int[] values, CRC32 crc) throws IOException {
+    int read = 0;
+    while (read < values.length) {
+      int count = Math.min(values.length - read, MAX_MAPPING_INTS);
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * count);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      crc.update(buf.duplicate());
+      buf.asIntBuffer().get(values, read, count);
+      read += count;
+      pos += 4L * count;
+    }
+    return pos;
+  }
+
+  /**
+   * Maps length ints without copying them, checksumming them on the way.
+   */
+  private static IntArray mapInts(FileChannel channel, long pos, int length, CRC32 crc) throws IOException {
+    IntArray values = IntArray.map(channel, pos, length, FileChannel.MapMode.READ_ONLY);
+    long end = pos + 4L * length;
+    while (pos < end) {
+      long bytes = Math.min(end - pos, 4L * MAX_MAPPING_INTS);
+      crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, bytes));
+      pos += bytes;
+    }
+    return values;
+  }
+
+  /**
+   * Converts text graph files to their binary cache.
+   *
+   * @param args graph files
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: GraphCache {graph-file} ...");
+      System.exit(-1);
+    }
+    for (String path : args) {
+      File cache = convert(path, Runtime.getRuntime().availableProcessors());
+      logger.info("Wrote " + cache + ", " + cache.length() + " bytes");
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+
+/**
+ * The contents of a graph file before initial colors are assigned: the
+ * header values, the CSR topology, the weights if the file has any and the
+ * line each node was read from.
+ * Initial colors depend on the line numbers, which only differ from the
+ * node ids when the body contains comment lines.
+ */
+class GraphFile {
+  final int headerNodes;
+  final int headerEdges;
+  final IntArray offsets;
+  final IntArray adjacency;
+  /**
+   * Weight of every adjacency entry, or null when the file has no edge weights.
+   */
+  final IntArray edgeWeights;
+  /**
+   * Weight of every node, or null when the file has no node weights.
+   */
+  final int[] nodeWeights;
+  /**
+   * 1-based body line of every node, or null when node v is on line v + 1.
+   */
+  final int[] lineIds;
+
+  GraphFile(int headerNodes, int headerEdges, int[] offsets, int[] adjacency, int[] edgeWeights,
+            int[] nodeWeights, int[] lineIds) {
+    this(headerNodes, headerEdges, IntArray.wrap(offsets), IntArray.wrap(adjacency),
+            edgeWeights == null ? null : IntArray.wrap(edgeWeights), nodeWeights, lineIds);
+  }
+
+  GraphFile(int headerNodes, int headerEdges, IntArray offsets, IntArray adjacency, IntArray edgeWeights,
+            int[] nodeWeights, int[] lineIds) {
+    this.headerNodes = headerNodes;
+    this.headerEdges = headerEdges;
+    this.offsets = offsets;
+    this.adjacency = adjacency;
+    this.edgeWeights = edgeWeights;
+    this.nodeWeights = nodeWeights;
+    this.lineIds = lineIds;
+  }
+
+  int size() {
+    return offsets.length() - 1;
+  }
+
+  int lineId(int v) {
+    return lineIds == null ? v + 1 : lineIds[v];
+  }
+
+  /**
+   * Assigns the initial colors in node order, so the RANDOM policy draws
+   * from the shared generator exactly like the line based reader.
+   */
+  Graph toGraph(GraphInitColorPolicy colorPolicy, int numPartitions) {
+    int[] colors = new int[size()];
+    for (int v = 0; v < colors.length; v++) {
+      colors[v] = GraphReader.getColor(headerNodes, numPartitions, lineId(v), colorPolicy);
+    }
+    return new Graph(offsets, adjacency, edgeWeights, colors, nodeWeights);
+  }
+}
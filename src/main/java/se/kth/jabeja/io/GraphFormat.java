@@ -0,0 +1,80 @@
+package se.kth.jabeja.io;
+
+import java.io.IOException;
+
+/**
+ * The optional fmt and ncon fields of a METIS header, "n m [fmt [ncon]]".
+ * The digits of fmt, read from the right, say whether the edges carry
+ * weights, whether the nodes carry weights and whether the nodes carry
+ * sizes. A node line then holds its size, its ncon weights and its
+ * neighbours, each followed by the weight of the edge to it.
+ *
+ * The engine balances a single node weight, with several constraints only
+ * the first weight is kept. Node sizes are skipped.
+ */
+public class GraphFormat {
+  public static final GraphFormat UNWEIGHTED = new GraphFormat(false, false, false, 0);
+
+  final boolean nodeSizes;
+  final boolean nodeWeights;
+  final boolean edgeWeights;
+  /**
+   * Number of weights per node, 0 without node weights.
+   */
+  final int numConstraints;
+
+  private GraphFormat(boolean nodeSizes, boolean nodeWeights, boolean edgeWeights, int numConstraints) {
+    this.nodeSizes = nodeSizes;
+    this.nodeWeights = nodeWeights;
+    this.edgeWeights = edgeWeights;
+    this.numConstraints = numConstraints;
+  }
+
+  /**
+   * @param header the fields of the header line
+   */
+  public static GraphFormat parse(String[] header) throws IOException {
+    if (header.length < 3) {
+      return UNWEIGHTED;
+    }
+    String fmt = header[2];
+    if (!fmt.matches("[01]{1,3}")) {
+      throw new IOException("Unsupported graph format " + fmt);
+    }
+    int bits = Integer.parseInt(fmt, 2);
+    boolean nodeWeights = (bits & 2) != 0;
+    int numConstraints = nodeWeights ? 1 : 0;
+    if (header.length >= 4) {
+      numConstraints = Integer.parseInt(header[3]);
+      if (numConstraints < 1 || !nodeWeights) {
+        throw new IOException("Unsupported number of node weights " + header[3] + " for format " + fmt);
+      }
+    }
+    return new GraphFormat((bits & 4) != 0, nodeWeights, (bits & 1) != 0, numConstraints);
+  }
+
+  public boolean isWeighted() {
+    return nodeWeights || edgeWeights;
+  }
+
+  /**
+   * @return whether the lines hold anything but neighbours
+   */
+  public boolean isPlain() {
+    return !nodeSizes && !nodeWeights && !edgeWeights;
+  }
+
+  /**
+   * @return number of values on a node line before its first neighbour
+   */
+  int prefixLength() {
+    return (nodeSizes ? 1 : 0) + numConstraints;
+  }
+
+  /**
+   * @return index on the node line of the node weight, -1 without node weights
+   */
+  int nodeWeightIndex() {
+    return nodeWeights ? (nodeSizes ? 1 : 0) : -1;
+  }
+}
@@ -1,14 +1,11 @@
 package se.kth.jabeja.io;
 
 import org.apache.log4j.Logger;
-import se.kth.jabeja.Node;
+import se.kth.jabeja.graph.Graph;
 import se.kth.jabeja.rand.RandNoGenerator;
 import se.kth.jabeja.config.GraphInitColorPolicy;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Created by salman on 10/24/16.
@@ -21,15 +18,84 @@ public class GraphReader {
   public static final String EMPTY_STRING = "";
 
   /**
-   * read graph form a file
+   * read graph form a file using all available processors
    * The file format is discussed here
    * http://chriswalshaw.co.uk/jostle/jostle-exe.pdf
    *
    * @param graphFilePath
    * @return
    */
-  public HashMap<Integer, Node> readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
-    final HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+  public Graph readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
+    return readGraph(graphFilePath, colorPolicy, noOfPartitions, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * read graph form a file by memory mapping it and parsing it with the
+   * given number of threads. If the file has a binary cache that is newer
+   * than it (see {@link GraphCache}), the cache is mapped instead.
+   *
+   * @param graphFilePath
+   * @param threads number of parser threads
+   * @return
+   */
+  public Graph readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions, final int threads) {
+    return readGraph(graphFilePath, colorPolicy, noOfPartitions, threads, false);
+  }
+
+  /**
+   * read graph form a file, optionally keeping its topology off the heap.
+   * An off-heap graph is mapped from its binary cache, which is written
+   * first if it is missing or outdated. Writing the cache parses the
+   * graph on the heap once, graphs that do not fit should be converted
+   * beforehand with import.sh.
+   *
+   * @param graphFilePath
+   * @param threads number of parser threads
+   * @param offHeap whether to map the offsets and adjacency instead of reading them onto the heap
+   * @return
+   */
+  public Graph readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions,
+                         final int threads, final boolean offHeap) {
+    Graph graph;
+    try {
+      GraphFile file = null;
+      if (offHeap) {
+        if (!GraphCache.isFresh(graphFilePath)) {
+          logger.info("Writing the graph cache of " + graphFilePath + " to map it off the heap");
+          GraphCache.convert(graphFilePath, threads);
+        }
+        file = GraphCache.read(GraphCache.cacheFileOf(graphFilePath), true);
+        logger.info(graphFilePath + " (mapped). Nodes: " + file.headerNodes + ", Edges: " + file.headerEdges);
+      } else if (GraphCache.isFresh(graphFilePath)) {
+        try {
+          file = GraphCache.read(GraphCache.cacheFileOf(graphFilePath));
+          logger.info(graphFilePath + " (cached). Nodes: " + file.headerNodes + ", Edges: " + file.headerEdges);
+        } catch (IOException e) {
+          logger.warn("Ignoring graph cache: " + e.getMessage());
+        }
+      }
+      if (file == null) {
+        file = new MappedGraphReader(threads).read(graphFilePath);
+      }
+      graph = file.toGraph(colorPolicy, noOfPartitions);
+      checkTotalEdgeWeight(graph);
+    } catch (IOException e) {
+      System.err.println("can not read from file " + graphFilePath + ": " + e.getMessage());
+      graph = new Graph.Builder(0, 0).build();
+    }
+    printColorDistribution(graph.getColors(), noOfPartitions);
+    return graph;
+  }
+
+  /**
+   * read graph form a file one line at a time. This is the reference
+   * implementation of the format, {@link #readGraph} gives the same result.
+   *
+   * @param graphFilePath
+   * @return
+   */
+  public Graph readGraphByLines(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
+    Graph graph;
     try {
       String strLine;
       FileInputStream fis = new FileInputStream(new File(graphFilePath));
@@ -38,6 +104,7 @@ public class GraphReader {
 
       int numNodes = 0;
       int numEdges = 0;
+      GraphFormat format = GraphFormat.UNWEIGHTED;
 
       // first uncommented line contain information about
       // number of nodes and number of edges
@@ -48,48 +115,97 @@ public class GraphReader {
         String[] parts = strLine.split(DELIMETER);
         numNodes = Integer.parseInt(parts[0]);
         numEdges = Integer.parseInt(parts[1]);
+        format = GraphFormat.parse(parts);
         break;
       }
 
-      logger.info(graphFilePath + ". Nodes: " + numNodes + ", Edges: " + numEdges);
+      logger.info(graphFilePath + ". Nodes: " + numNodes + ", Edges: " + numEdges +
+              (format.isWeighted() ? " (weighted)" : ""));
 
+      Graph.Builder builder = new Graph.Builder(numNodes, 2 * numEdges);
       int id = 0;
-      int partitionSize = numNodes / noOfPartitions;
 
       while ((strLine = br.readLine()) != null) {
 
         id++;
-        ArrayList<Integer> neighbours = new ArrayList<Integer>();
 
         if (strLine.startsWith("%") || strLine.startsWith("#")) {
           continue;
         }
 
-        String[] parts = strLine.split(DELIMETER);
-        for (int i = 0; i < parts.length; i++) {
-          if (parts[i].equals(EMPTY_STRING)) {
-            continue;
+        int color = getColor(numNodes, noOfPartitions, id, colorPolicy);
+        if (format.isPlain()) {
+          builder.addNode(color);
+          String[] parts = strLine.split(DELIMETER);
+          for (int i = 0; i < parts.length; i++) {
+            if (parts[i].equals(EMPTY_STRING)) {
+              continue;
+            }
+            // ids in the file are 1-based, the graph uses dense 0-based indices
+            builder.addNeighbour(Integer.parseInt(parts[i]) - 1);
           }
-          neighbours.add(Integer.parseInt(parts[i]));
+        } else {
+          addWeightedNode(builder, format, color, strLine);
         }
-
-
-        int color = getColor(numNodes, noOfPartitions, id, colorPolicy);
-
-        Node node = new Node(id, color);
-        node.setNeighbours(neighbours);
-        nodes.put(id, node);
       }
 
       fis.close();
+      graph = builder.build();
+      checkTotalEdgeWeight(graph);
     } catch (IOException e) {
-      System.err.println("can not read from file " + graphFilePath);
+      System.err.println("can not read from file " + graphFilePath + ": " + e.getMessage());
+      graph = new Graph.Builder(0, 0).build();
     }
-    printColorDistribution(nodes);
-    return nodes;
+    printColorDistribution(graph.getColors(), noOfPartitions);
+    return graph;
   }
 
 
+  /**
+   * The edge cut, the cut of every color and the weighted degrees are ints,
+   * which hold any sum of edge weights as long as the total does.
+   *
+   * @throws IOException if the total edge weight of the graph exceeds {@link Integer#MAX_VALUE}
+   */
+  public static void checkTotalEdgeWeight(Graph graph) throws IOException {
+    long total = graph.getTotalEdgeWeight();
+    if (total > Integer.MAX_VALUE) {
+      throw new IOException("Total edge weight " + total + " exceeds " + Integer.MAX_VALUE +
+              ", scale the edge weights down");
+    }
+  }
+
+  /**
+   * Adds the node on a line of a weighted file: its size, which is skipped,
+   * its weights, of which the first is kept, then its neighbours, each
+   * followed by an edge weight if the file has edge weights. A blank line
+   * is an isolated node of weight 1.
+   */
+  private static void addWeightedNode(Graph.Builder builder, GraphFormat format, int color, String line)
+          throws IOException {
+    String[] parts = line.trim().isEmpty() ? new String[0] : line.trim().split(" +");
+    int prefix = format.prefixLength();
+    int step = format.edgeWeights ? 2 : 1;
+    if (parts.length > 0 && (parts.length < prefix || (parts.length - prefix) % step != 0)) {
+      throw new IOException("Missing weights on line \"" + line + "\"");
+    }
+    int nodeWeight = parts.length > 0 && format.nodeWeights ? Integer.parseInt(parts[format.nodeWeightIndex()]) : 1;
+    for (int i = 0; i < Math.min(prefix, parts.length); i++) {
+      if (Integer.parseInt(parts[i]) < 0) {
+        throw new IOException("Invalid weight " + parts[i] + " on line \"" + line + "\"");
+      }
+    }
+    builder.addNode(color, nodeWeight);
+    for (int i = prefix; i < parts.length; i += step) {
+      int weight = format.edgeWeights ? Integer.parseInt(parts[i + 1]) : 1;
+      if (weight <= 0) {
+        throw new IOException("Invalid weight " + weight + " on line \"" + line + "\"");
+      }
+      // ids in the file are 1-based, the graph uses dense 0-based indices
+      builder.addNeighbour(Integer.parseInt(parts[i]) - 1, weight);
+    }
+  }
+
   /**
    * Generate a color according to the policy.
    * The range of colors are [0, numPartitions)
@@ -100,7 +216,7 @@ public class GraphReader {
    * @param colorPolicy
    * @return color
    */
-  private int getColor(int numNodes, int numPartitions, int id, GraphInitColorPolicy colorPolicy) {
+  public static int getColor(int numNodes, int numPartitions, int id, GraphInitColorPolicy colorPolicy) {
     if (colorPolicy == GraphInitColorPolicy.BATCH) {
       double partitionSize = (double) numNodes / (double) numPartitions;
       for (int i = 0; i < numPartitions; i++) {
@@ -123,23 +239,21 @@ public class GraphReader {
   /**
    * Prints the distribution of the colors of the graph
    *
-   * @param graph input graph
+   * @param colors color of each node
+   * @param numPartitions number of colors
    */
-  private void printColorDistribution(HashMap<Integer, Node> graph) {
-    Map<Integer, Integer> distribution = new HashMap<Integer, Integer>();
-    for (int i : graph.keySet()) {
-      int color = graph.get(i).getColor();
-      Integer count = distribution.get(color);
-      if (count == null) {
-        count = new Integer(0);
-      }
-      distribution.put(color, new Integer(count + 1));
+  static void printColorDistribution(int[] colors, int numPartitions) {
+    int[] distribution = new int[numPartitions];
+    for (int color : colors) {
+      distribution[color]++;
     }
 
     StringBuffer sb = new StringBuffer("Color Distribution : ");
-    for (int i : distribution.keySet()) {
-      int count = distribution.get(i);
-      sb.append("[ Color: ").append(i).append(",").append(" Count: ").append(count).append(" ] ");
+    for (int i = 0; i < numPartitions; i++) {
+      if (distribution[i] == 0) {
+        continue;
+      }
+      sb.append("[ Color: ").append(i).append(",").append(" Count: ").append(distribution[i]).append(" ] ");
     }
 
     logger.info(sb);
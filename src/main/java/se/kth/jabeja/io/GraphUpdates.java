@@ -0,0 +1,117 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.DynamicGraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a stream of graph updates, one per line, and applies them to a
+ * {@link DynamicGraph}:
+ * <pre>
+ *   e+ u v [w]   adds the edge {u, v} of weight w, default 1, or sets its weight
+ *   e- u v       removes the edge {u, v}
+ *   n+ [w]       adds a node of weight w, default 1
+ *   n- u         removes node u and its edges
+ * </pre>
+ * Ids are 1-based like in the graph file. Added nodes get the ids after
+ * the last node of the graph, in the order they are added, and the ids of
+ * removed nodes are not reused. Blank lines and lines starting with '%'
+ * or '#' are skipped.
+ *
+ * Adding an edge that exists with the same weight and removing one that
+ * does not exist change nothing and are only counted.
+ */
+public class GraphUpdates {
+  public int edgesAdded;
+  public int edgesRemoved;
+  public int nodesAdded;
+  public int nodesRemoved;
+  /**
+   * Updates that changed nothing.
+   */
+  public int ignored;
+
+  private GraphUpdates() {
+  }
+
+  /**
+   * @throws IOException if a line is not a valid update, with its line number
+   */
+  public static GraphUpdates apply(File file, DynamicGraph graph) throws IOException {
+    GraphUpdates updates = new GraphUpdates();
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(
+            new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+      String strLine;
+      int line = 0;
+      while ((strLine = br.readLine()) != null) {
+        line++;
+        String trimmed = strLine.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("%") || trimmed.startsWith("#")) {
+          continue;
+        }
+        try {
+          updates.apply(trimmed.split("\\s+"), graph);
+        } catch (IllegalArgumentException e) {
+          // includes NumberFormatException
+          throw new IOException(file + ":" + line + ": " + e.getMessage() + " in \"" + strLine + "\"");
+        }
+      }
+    }
+    return updates;
+  }
+
+  private void apply(String[] parts, DynamicGraph graph) {
+    String op = parts[0];
+    if (op.equals("e+") && (parts.length == 3 || parts.length == 4)) {
+      int weight = parts.length == 4 ? Integer.parseInt(parts[3]) : 1;
+      if (graph.addEdge(node(parts[1], graph), node(parts[2], graph), weight)) {
+        edgesAdded++;
+      } else {
+        ignored++;
+      }
+    } else if (op.equals("e-") && parts.length == 3) {
+      if (graph.removeEdge(node(parts[1], graph), node(parts[2], graph))) {
+        edgesRemoved++;
+      } else {
+        ignored++;
+      }
+    } else if (op.equals("n+") && parts.length <= 2) {
+      graph.addNode(parts.length == 2 ? Integer.parseInt(parts[1]) : 1);
+      nodesAdded++;
+    } else if (op.equals("n-") && parts.length == 2) {
+      graph.removeNode(node(parts[1], graph));
+      nodesRemoved++;
+    } else {
+      throw new IllegalArgumentException("Unknown update");
+    }
+  }
+
+  /**
+   * @return the node index of a 1-based id
+   */
+  private static int node(String id, DynamicGraph graph) {
+    int v = Integer.parseInt(id) - 1;
+    if (!graph.contains(v)) {
+      throw new IllegalArgumentException("Node " + id + " does not exist");
+    }
+    return v;
+  }
+
+  /**
+   * @return number of updates that changed the graph
+   */
+  public int size() {
+    return edgesAdded + edgesRemoved + nodesAdded + nodesRemoved;
+  }
+
+  @Override
+  public String toString() {
+    return "edges added: " + edgesAdded + ", edges removed: " + edgesRemoved +
+            ", nodes added: " + nodesAdded + ", nodes removed: " + nodesRemoved + ", ignored: " + ignored;
+  }
+}
@@ -0,0 +1,52 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IntArray;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Writes a graph in the adjacency list format {@link GraphReader} reads,
+ * in index order. The header gets the METIS fmt field, see
+ * {@link GraphFormat}, when the graph has node or edge weights.
+ */
+public class GraphWriter {
+
+  private GraphWriter() {
+  }
+
+  public static void write(Graph graph, File file) throws IOException {
+    IntArray offsets = graph.getOffsets();
+    IntArray adjacency = graph.getAdjacency();
+    IntArray edgeWeights = graph.getEdgeWeights();
+    boolean nodeWeights = graph.getNodeWeights() != null;
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(file, false), 1 << 16)) {
+      out.write(graph.size() + GraphReader.DELIMETER + graph.numArcs() / 2);
+      if (nodeWeights || edgeWeights != null) {
+        out.write(GraphReader.DELIMETER + (nodeWeights ? "1" : "0") + (edgeWeights != null ? "1" : "0"));
+      }
+      out.write('\n');
+      for (int v = 0; v < graph.size(); v++) {
+        String separator = "";
+        if (nodeWeights) {
+          out.write(Integer.toString(graph.getNodeWeight(v)));
+          separator = GraphReader.DELIMETER;
+        }
+        for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+          out.write(separator);
+          // ids in the file are 1-based
+          out.write(Integer.toString(adjacency.get(i) + 1));
+          if (edgeWeights != null) {
+            out.write(GraphReader.DELIMETER);
+            out.write(Integer.toString(edgeWeights.get(i)));
+          }
+          separator = GraphReader.DELIMETER;
+        }
+        out.write('\n');
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package se.kth.jabeja.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One JSON object per round and line.
+ */
+class JsonLinesRoundSink implements RoundSink {
+  private final Writer out;
+
+  JsonLinesRoundSink(File file, boolean append) throws IOException {
+    out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, options(append));
+  }
+
+  @Override
+  public void write(RoundRecord r) throws IOException {
+    out.write("{\"round\":" + r.round +
+            ",\"edgeCut\":" + r.edgeCut +
+            ",\"swaps\":" + r.swaps +
+            ",\"migrations\":" + r.migrations +
+            ",\"temperature\":" + r.temperature +
+            ",\"elapsedNanos\":" + r.elapsedNanos + "}\n");
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private static OpenOption[] options(boolean append) {
+    return append ? new OpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.APPEND} : new OpenOption[0];
+  }
+}
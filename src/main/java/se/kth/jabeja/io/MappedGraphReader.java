@@ -0,0 +1,446 @@
+package se.kth.jabeja.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the METIS/Chaco style adjacency list format by memory mapping the
+ * file and parsing the ASCII digits straight into int arrays.
+ *
+ * The body after the header line is cut into chunks at line boundaries,
+ * each chunk is parsed by its own task, and the chunks are then copied
+ * into the CSR arrays in parallel. Lines are numbered exactly like
+ * {@link GraphReader#readGraphByLines} numbers them, so the resulting graph,
+ * including its initial colors, is identical.
+ *
+ * Files without weights take the plain path, every value is a neighbour.
+ * Weighted files, see {@link GraphFormat}, also fill the weight arrays.
+ */
+class MappedGraphReader {
+  /**
+   * Chunks are kept below this size so that every chunk fits in one mapping.
+   */
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+  private static final long MIN_CHUNK_BYTES = 1L << 20;
+
+  private final int threads;
+
+  MappedGraphReader(int threads) {
+    this.threads = Math.max(threads, 1);
+  }
+
+  GraphFile read(String graphFilePath) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(graphFilePath, "r");
+         FileChannel channel = file.getChannel()) {
+      long size = channel.size();
+
+      // first uncommented line contain information about
+      // number of nodes and number of edges
+      int numNodes = 0;
+      int numEdges = 0;
+      GraphFormat format = GraphFormat.UNWEIGHTED;
+      long pos = 0;
+      while (pos < size) {
+        long end = findLineEnd(channel, pos);
+        String line = readString(channel, pos, end);
+        pos = skipTerminator(channel, end);
+        if (line.startsWith("%") || line.startsWith("#"))
+          continue;
+
+        String[] parts = line.split(GraphReader.DELIMETER);
+        numNodes = Integer.parseInt(parts[0]);
+        numEdges = Integer.parseInt(parts[1]);
+        format = GraphFormat.parse(parts);
+        break;
+      }
+
+      GraphReader.logger.info(graphFilePath + ". Nodes: " + numNodes + ", Edges: " + numEdges +
+              (format.isWeighted() ? " (weighted)" : ""));
+
+      final GraphFormat f = format;
+      long[] bounds = split(channel, pos, size);
+      List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        final long from = bounds[i];
+        final long to = bounds[i + 1];
+        tasks.add(new Callable<Chunk>() {
+          @Override
+          public Chunk call() throws IOException {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), f);
+          }
+        });
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        Chunk[] chunks = getAll(pool.invokeAll(tasks), new Chunk[tasks.size()]);
+        return assemble(pool, chunks, numNodes, numEdges);
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Cuts [from, size) into chunks that start right after a '\n'.
+   */
+  private long[] split(FileChannel channel, long from, long size) throws IOException {
+    long bytes = size - from;
+    long chunkBytes = Math.max(MIN_CHUNK_BYTES, bytes / threads + 1);
+    chunkBytes = Math.min(chunkBytes, MAX_CHUNK_BYTES);
+
+    List<Long> bounds = new ArrayList<Long>();
+    bounds.add(from);
+    long pos = from;
+    while (size - pos > chunkBytes) {
+      long end = findByte(channel, pos + chunkBytes, (byte) '\n');
+      if (end >= size - 1) {
+        break;
+      }
+      pos = end + 1;
+      bounds.add(pos);
+    }
+    bounds.add(size);
+
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Parses the lines of one chunk.
+   */
+  private Chunk parse(MappedByteBuffer buf, GraphFormat format) throws IOException {
+    Chunk chunk = new Chunk(format);
+    boolean plain = format.isPlain();
+    int limit = buf.limit();
+    int pos = 0;
+    while (pos < limit) {
+      byte first = buf.get(pos);
+      if (first == '%' || first == '#') {
+        while (pos < limit && buf.get(pos) != '\n' && buf.get(pos) != '\r') {
+          pos++;
+        }
+      } else {
+        chunk.addNode();
+        int lineStart = pos;
+        int token = 0;
+        int value = 0;
+        int digits = 0;
+        boolean negative = false;
+        int tokenStart = pos;
+        while (true) {
+          byte b = pos < limit ? buf.get(pos) : (byte) '\n';
+          if (b >= '0' && b <= '9') {
+            int digit = b - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+              throw numberFormat(buf, tokenStart, pos);
+            }
+            value = value * 10 + digit;
+            digits++;
+          } else if (b == ' ' || b == '\n' || b == '\r') {
+            if (digits > 0) {
+              if (plain) {
+                // ids in the file are 1-based, the graph uses dense 0-based indices
+                chunk.addNeighbour((negative ? -value : value) - 1);
+              } else if (!chunk.addValue(token, negative ? -value : value)) {
+                throw new IOException("Invalid weight " + (negative ? -value : value) + " on line \"" +
+                        line(buf, lineStart) + "\"");
+              }
+              token++;
+            } else if (pos != tokenStart) {
+              throw numberFormat(buf, tokenStart, pos);
+            }
+            if (b != ' ') {
+              if (!plain && !chunk.endNode(token)) {
+                throw new IOException("Missing weights on line \"" + line(buf, lineStart) + "\"");
+              }
+              break;
+            }
+            value = 0;
+            digits = 0;
+            negative = false;
+            tokenStart = pos + 1;
+          } else if ((b == '-' || b == '+') && pos == tokenStart) {
+            negative = b == '-';
+          } else {
+            throw numberFormat(buf, tokenStart, pos);
+          }
+          pos++;
+        }
+      }
+      chunk.lines++;
+
+      // skip the line terminator, "\r\n" counts once
+      if (pos < limit && buf.get(pos++) == '\r' && pos < limit && buf.get(pos) == '\n') {
+        pos++;
+      }
+    }
+    return chunk;
+  }
+
+  private GraphFile assemble(ForkJoinPool pool, final Chunk[] chunks, int numNodes, int numEdges) throws IOException {
+    final int[] nodeBase = new int[chunks.length + 1];
+    final int[] arcBase = new int[chunks.length + 1];
+    int[] lineBase = new int[chunks.length + 1];
+    for (int i = 0; i < chunks.length; i++) {
+      nodeBase[i + 1] = nodeBase[i] + chunks[i].numNodes;
+      arcBase[i + 1] = arcBase[i] + chunks[i].numArcs;
+      lineBase[i + 1] = lineBase[i] + chunks[i].lines;
+    }
+
+    final int[] offsets = new int[nodeBase[chunks.length] + 1];
+    final int[] adjacency = new int[arcBase[chunks.length]];
+    final int[] edgeWeights = chunks.length > 0 && chunks[0].edgeWeights != null ? new int[adjacency.length] : null;
+    final int[] nodeWeights = chunks.length > 0 && chunks[0].nodeWeights != null ? new int[offsets.length - 1] : null;
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int i = 0; i < chunks.length; i++) {
+      final int c = i;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          Chunk chunk = chunks[c];
+          for (int v = 0; v < chunk.numNodes; v++) {
+            offsets[nodeBase[c] + v] = arcBase[c] + chunk.offsets[v];
+          }
+          System.arraycopy(chunk.adjacency, 0, adjacency, arcBase[c], chunk.numArcs);
+          if (edgeWeights != null) {
+            System.arraycopy(chunk.edgeWeights, 0, edgeWeights, arcBase[c], chunk.numArcs);
+          }
+          if (nodeWeights != null) {
+            System.arraycopy(chunk.nodeWeights, 0, nodeWeights, nodeBase[c], chunk.numNodes);
+          }
+          return null;
+        }
+      });
+    }
+    getAll(pool.invokeAll(tasks), new Void[tasks.size()]);
+    offsets[offsets.length - 1] = adjacency.length;
+
+    // line numbers are only kept when comment lines made them differ from the node ids
+    int[] lineIds = null;
+    if (lineBase[chunks.length] != nodeBase[chunks.length]) {
+      lineIds = new int[offsets.length - 1];
+      int v = 0;
+      for (int i = 0; i < chunks.length; i++) {
+        Chunk chunk = chunks[i];
+        for (int j = 0; j < chunk.numNodes; j++) {
+          lineIds[v++] = lineBase[i] + chunk.lineNumbers[j] + 1;
+        }
+      }
+    }
+    return new GraphFile(numNodes, numEdges, offsets, adjacency, edgeWeights, nodeWeights, lineIds);
+  }
+
+  private static <T> T[] getAll(List<Future<T>> futures, T[] results) throws IOException {
+    for (int i = 0; i < results.length; i++) {
+      try {
+        results[i] = futures.get(i).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while reading the graph", e);
+      } catch (ExecutionException e) {
+        // the pool wraps checked exceptions of its tasks in runtime exceptions
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+        }
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    return results;
+  }
+
+  private static NumberFormatException numberFormat(ByteBuffer buf, int from, int pos) {
+    int end = pos;
+    while (end < buf.limit() && buf.get(end) != ' ' && buf.get(end) != '\n' && buf.get(end) != '\r') {
+      end++;
+    }
+    byte[] bytes = new byte[end - from];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buf.get(from + i);
+    }
+    return new NumberFormatException("For input string: \"" + new String(bytes, StandardCharsets.UTF_8) + "\"");
+  }
+
+  /**
+   * @return the line starting at from, for error messages
+   */
+  private static String line(ByteBuffer buf, int from) {
+    int end = from;
+    while (end < buf.limit() && buf.get(end) != '\n' && buf.get(end) != '\r') {
+      end++;
+    }
+    byte[] bytes = new byte[end - from];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buf.get(from + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return position of the first '\n' or '\r' at or after pos, or the file size
+   */
+  private static long findLineEnd(FileChannel channel, long pos) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(8192);
+    while (true) {
+      buf.clear();
+      int read = channel.read(buf, pos);
+      if (read <= 0) {
+        return pos;
+      }
+      for (int i = 0; i < read; i++) {
+        byte b = buf.get(i);
+        if (b == '\n' || b == '\r') {
+          return pos + i;
+        }
+      }
+      pos += read;
+    }
+  }
+
+  /**
+   * @return position of the first occurrence of b at or after pos, or the file size
+   */
+  private static long findByte(FileChannel channel, long pos, byte b) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(8192);
+    while (true) {
+      buf.clear();
+      int read = channel.read(buf, pos);
+      if (read <= 0) {
+        return pos;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buf.get(i) == b) {
+          return pos + i;
+        }
+      }
+      pos += read;
+    }
+  }
+
+  private static long skipTerminator(FileChannel channel, long end) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(2);
+    int read = channel.read(buf, end);
+    if (read >= 1 && buf.get(0) == '\r') {
+      return read == 2 && buf.get(1) == '\n' ? end + 2 : end + 1;
+    }
+    return read >= 1 ? end + 1 : end;
+  }
+
+  private static String readString(FileChannel channel, long from, long to) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+    while (buf.hasRemaining() && channel.read(buf, from + buf.position()) > 0) {
+    }
+    return new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Nodes parsed from one chunk, with chunk-local offsets and line numbers.
+   */
+  private static class Chunk {
+    final GraphFormat format;
+    int[] offsets = new int[1024];
+    int[] lineNumbers = new int[1024];
+    int[] adjacency = new int[8192];
+    /**
+     * Parallel to offsets and adjacency, null without weights of their kind.
+     */
+    int[] nodeWeights;
+    int[] edgeWeights;
+    int numNodes;
+    int numArcs;
+    int lines;
+
+    Chunk(GraphFormat format) {
+      this.format = format;
+      if (format.nodeWeights) {
+        nodeWeights = new int[offsets.length];
+      }
+      if (format.edgeWeights) {
+        edgeWeights = new int[adjacency.length];
+      }
+    }
+
+    void addNode() {
+      if (numNodes == offsets.length) {
+        offsets = Arrays.copyOf(offsets, numNodes * 2);
+        lineNumbers = Arrays.copyOf(lineNumbers, numNodes * 2);
+        if (nodeWeights != null) {
+          nodeWeights = Arrays.copyOf(nodeWeights, numNodes * 2);
+        }
+      }
+      offsets[numNodes] = numArcs;
+      lineNumbers[numNodes] = lines;
+      numNodes++;
+    }
+
+    void addNeighbour(int v) {
+      if (numArcs == adjacency.length) {
+        adjacency = Arrays.copyOf(adjacency, numArcs * 2);
+        if (edgeWeights != null) {
+          edgeWeights = Arrays.copyOf(edgeWeights, numArcs * 2);
+        }
+      }
+      adjacency[numArcs++] = v;
+    }
+
+    /**
+     * Adds the value at index token of the line of the last added node.
+     *
+     * @return false if the value is not a valid weight
+     */
+    boolean addValue(int token, int value) {
+      int prefix = format.prefixLength();
+      if (token < prefix) {
+        if (token == format.nodeWeightIndex()) {
+          nodeWeights[numNodes - 1] = value;
+        }
+        return value >= 0;
+      }
+      if (!format.edgeWeights) {
+        addNeighbour(value - 1);
+      } else if ((token - prefix) % 2 == 0) {
+        // its weight follows, endNode checks that it does
+        addNeighbour(value - 1);
+      } else {
+        edgeWeights[numArcs - 1] = value;
+        return value > 0;
+      }
+      return true;
+    }
+
+    /**
+     * @param tokens number of values on the line of the last added node
+     * @return false if the line ends before the weights it must hold
+     */
+    boolean endNode(int tokens) {
+      int prefix = format.prefixLength();
+      if (tokens == 0) {
+        // a blank line is an isolated node, of weight 1 if it should have one
+        if (nodeWeights != null) {
+          nodeWeights[numNodes - 1] = 1;
+        }
+        return true;
+      }
+      return tokens >= prefix && (!format.edgeWeights || (tokens - prefix) % 2 == 0);
+    }
+  }
+}
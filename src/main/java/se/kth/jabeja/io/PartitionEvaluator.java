@@ -0,0 +1,106 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.PartitionQuality;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Scores partition files of a graph, e.g. the .part files written by a
+ * run or those of other partitioners, with {@link PartitionQuality}. The
+ * graph is read like Main reads it, from its binary cache when there is a
+ * fresh one, so a graph that is scored repeatedly should be converted
+ * with convert.sh first.
+ */
+public class PartitionEvaluator {
+  final static Logger logger = Logger.getLogger(PartitionEvaluator.class);
+
+  private final int threads;
+  private final boolean offHeap;
+
+  public PartitionEvaluator(int threads, boolean offHeap) {
+    this.threads = threads;
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * @param numPartitions number of partitions, or 0 for one more than the
+   *                      largest color in each file
+   */
+  public void evaluate(String graphFilePath, String[] partitionFiles, int numPartitions, PrintStream out)
+          throws IOException {
+    long start = System.nanoTime();
+    // the initial colors are not used, one color keeps the reader from drawing any
+    Graph graph = new GraphReader().readGraph(graphFilePath, GraphInitColorPolicy.ROUND_ROBIN, 1, threads, offHeap);
+    logger.info("read " + graphFilePath + " in " + seconds(start) + " s");
+
+    for (String partitionFile : partitionFiles) {
+      start = System.nanoTime();
+      int[] parts = PartitionFile.read(new File(partitionFile), graph.size());
+      int k = numPartitions;
+      if (k == 0) {
+        for (int part : parts) {
+          k = Math.max(k, part + 1);
+        }
+      }
+      PartitionQuality quality = PartitionQuality.evaluate(graph, parts, k, threads);
+      logger.info("evaluated " + partitionFile + " in " + seconds(start) + " s");
+      print(partitionFile, quality, out);
+    }
+  }
+
+  static void print(String name, PartitionQuality q, PrintStream out) {
+    long edges = q.numArcs / 2;
+    out.println("# " + name);
+    out.println("nodes: " + q.numNodes + ", edges: " + edges + ", partitions: " + q.numPartitions);
+    out.println("edge cut: " + q.edgeCut + (q.totalEdgeWeight > 0
+            ? String.format(" (%.2f%% of the edges)", 100.0 * q.edgeCut / q.totalEdgeWeight) : ""));
+    out.println("communication volume: " + q.communicationVolume);
+    out.println("boundary nodes: " + q.boundaryNodes +
+            (q.numNodes > 0 ? String.format(" (%.2f%% of the nodes)", 100.0 * q.boundaryNodes / q.numNodes) : ""));
+    out.println("external degree: max " + q.maxExternalDegree + String.format(", avg %.4f", q.getAvgExternalDegree()));
+    out.println(String.format("imbalance: %.4f", q.getImbalance()));
+    out.println("Partition\t\tNodes\t\tWeight\t\tCut\t\tVolume\t\tBoundary");
+    for (int p = 0; p < q.numPartitions; p++) {
+      out.println(p + "\t\t" + q.nodes[p] + "\t\t" + q.weights[p] + "\t\t" + q.cuts[p] + "\t\t" +
+              q.volumes[p] + "\t\t" + q.boundaries[p]);
+    }
+    out.println();
+  }
+
+  private static String seconds(long start) {
+    return String.format("%.3f", (System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * @param args [-threads n] [-k partitions] [-offHeap] {graph-file} {partition-file} ...
+   */
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int numPartitions = 0;
+    boolean offHeap = false;
+    int i = 0;
+    for (; i < args.length && args[i].startsWith("-"); i++) {
+      if (args[i].equals("-threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-k") && i + 1 < args.length) {
+        numPartitions = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-offHeap")) {
+        offHeap = true;
+      } else {
+        break;
+      }
+    }
+    if (args.length - i < 2 || threads < 1 || numPartitions < 0) {
+      System.err.println("Usage: PartitionEvaluator [-threads n] [-k partitions] [-offHeap] {graph-file} {partition-file} ...");
+      System.exit(-1);
+    }
+    String[] partitionFiles = new String[args.length - i - 1];
+    System.arraycopy(args, i + 1, partitionFiles, 0, partitionFiles.length);
+    new PartitionEvaluator(threads, offHeap).evaluate(args[i], partitionFiles, numPartitions, System.out);
+  }
+}
@@ -0,0 +1,99 @@
+package se.kth.jabeja.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Partition files list the color of every node, one per line, in the
+ * order of the nodes in the graph file. Colors are 0-based, as in the
+ * partition files METIS writes.
+ */
+public class PartitionFile {
+
+  private PartitionFile() {
+  }
+
+  /**
+   * @param colors color of every node, in the order of the graph file
+   */
+  public static void write(int[] colors, File file) throws IOException {
+    try (BufferedWriter out = new BufferedWriter(new FileWriter(file, false), 1 << 16)) {
+      for (int color : colors) {
+        out.write(Integer.toString(color));
+        out.write('\n');
+      }
+    }
+  }
+
+  /**
+   * Reads a partition file. Blank lines and lines starting with '%' or
+   * '#' are skipped.
+   *
+   * @param expectedNodes number of nodes of the graph, or -1 to take all lines
+   * @return color of every node, in the order of the graph file
+   * @throws IOException if a line is not a single non-negative number or
+   *                     the file does not have expectedNodes colors
+   */
+  public static int[] read(File file, int expectedNodes) throws IOException {
+    int[] colors = new int[expectedNodes >= 0 ? expectedNodes : 1024];
+    int count = 0;
+    int line = 1;
+    byte[] buf = new byte[1 << 16];
+    try (InputStream in = new FileInputStream(file)) {
+      int value = 0;
+      int digits = 0;
+      boolean comment = false;
+      // whitespace after the number, another digit is an error
+      boolean ended = false;
+      int read;
+      do {
+        read = in.read(buf);
+        // the end of the file terminates the last line
+        int end = read > 0 ? read : 1;
+        for (int i = 0; i < end; i++) {
+          byte b = read > 0 ? buf[i] : (byte) '\n';
+          if (b == '\n') {
+            if (digits > 0) {
+              if (expectedNodes >= 0 && count == expectedNodes) {
+                throw new IOException(file + " has more than " + expectedNodes + " colors");
+              }
+              if (count == colors.length) {
+                colors = Arrays.copyOf(colors, colors.length * 2);
+              }
+              colors[count++] = value;
+            }
+            value = 0;
+            digits = 0;
+            comment = false;
+            ended = false;
+            line++;
+          } else if (comment) {
+            continue;
+          } else if (b == '\r' || b == ' ' || b == '\t') {
+            ended = digits > 0;
+          } else if (digits == 0 && (b == '%' || b == '#')) {
+            comment = true;
+          } else if (b >= '0' && b <= '9' && !ended) {
+            int digit = b - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+              throw new IOException(file + ":" + line + " is not a color");
+            }
+            value = value * 10 + digit;
+            digits++;
+          } else {
+            throw new IOException(file + ":" + line + " is not a color");
+          }
+        }
+      } while (read > 0);
+    }
+    if (expectedNodes >= 0 && count != expectedNodes) {
+      throw new IOException(file + " has " + count + " colors, expected " + expectedNodes);
+    }
+    return count == colors.length ? colors : Arrays.copyOf(colors, count);
+  }
+}
@@ -0,0 +1,25 @@
+package se.kth.jabeja.io;
+
+/**
+ * The result of one round, as written to the result file.
+ */
+public class RoundRecord {
+  public final int round;
+  public final int edgeCut;
+  public final int swaps;
+  public final int migrations;
+  public final float temperature;
+  /**
+   * Nanoseconds since the run started.
+   */
+  public final long elapsedNanos;
+
+  public RoundRecord(int round, int edgeCut, int swaps, int migrations, float temperature, long elapsedNanos) {
+    this.round = round;
+    this.edgeCut = edgeCut;
+    this.swaps = swaps;
+    this.migrations = migrations;
+    this.temperature = temperature;
+    this.elapsedNanos = elapsedNanos;
+  }
+}
@@ -0,0 +1,42 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.OutputFormat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Destination of round records. A sink keeps its file open until it is
+ * closed and may buffer records until {@link #flush()}.
+ */
+public interface RoundSink extends Closeable, Flushable {
+
+  void write(RoundRecord record) throws IOException;
+
+  /**
+   * Opens a sink of the given format, replacing the file if it exists.
+   */
+  static RoundSink open(OutputFormat format, File file) throws IOException {
+    return open(format, file, false);
+  }
+
+  /**
+   * Opens a sink of the given format.
+   *
+   * @param append whether to continue a file written before instead of replacing it
+   */
+  static RoundSink open(OutputFormat format, File file, boolean append) throws IOException {
+    switch (format) {
+      case TSV:
+        return new TsvRoundSink(file, append);
+      case JSON:
+        return new JsonLinesRoundSink(file, append);
+      case BINARY:
+        return new BinaryRoundSink(file, append);
+      default:
+        throw new UnsupportedOperationException(format + " output is not implemented");
+    }
+  }
+}
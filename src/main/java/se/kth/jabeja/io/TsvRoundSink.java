@@ -0,0 +1,49 @@
+package se.kth.jabeja.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tab separated result file. The first four columns are the ones
+ * graph.gnuplot plots: round, edge cut, swaps and migrations.
+ */
+class TsvRoundSink implements RoundSink {
+  private static final String DELIMITER = "\t\t";
+
+  private final Writer out;
+
+  TsvRoundSink(File file, boolean append) throws IOException {
+    out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, options(append));
+    if (append) {
+      return;
+    }
+    out.write("# Migration is number of nodes that have changed color.\n\n");
+    out.write("Round" + DELIMITER + "Edge-Cut" + DELIMITER + "Swaps" + DELIMITER + "Migrations" +
+            DELIMITER + "Temperature" + DELIMITER + "Elapsed-ns" + "\n");
+  }
+
+  @Override
+  public void write(RoundRecord r) throws IOException {
+    out.write(r.round + DELIMITER + r.edgeCut + DELIMITER + r.swaps + DELIMITER + r.migrations +
+            DELIMITER + r.temperature + DELIMITER + r.elapsedNanos + "\n");
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private static OpenOption[] options(boolean append) {
+    return append ? new OpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.APPEND} : new OpenOption[0];
+  }
+}
@@ -0,0 +1,285 @@
+package se.kth.jabeja.metrics;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and phase timers of a run. Workers count into plain fields and
+ * add them here when they merge, so the hot path never touches shared
+ * state; the totals are {@link LongAdder}s because parallel workers merge
+ * concurrently.
+ *
+ * The totals are published as an MBean under {@code se.kth.jabeja:type=Jabeja}
+ * and every round is recorded as a {@code se.kth.jabeja.Round} flight
+ * recorder event when running from the multi-release jar on Java 16+.
+ */
+public class JabejaMetrics implements JabejaMetricsMBean {
+  final static Logger logger = Logger.getLogger(JabejaMetrics.class);
+
+  private static final String JFR_RECORDER = "se.kth.jabeja.metrics.RoundEvent$Recorder";
+
+  /**
+   * Creates the flight recorder events, null if they cannot be created on this JVM.
+   */
+  static final RoundRecorder JFR = jfrRecorder();
+
+  private static final AtomicInteger instances = new AtomicInteger();
+
+  private final LongAdder candidateEvaluations = new LongAdder();
+  private final LongAdder localPartnerHits = new LongAdder();
+  private final LongAdder randomPartnerHits = new LongAdder();
+  private final LongAdder swapsAccepted = new LongAdder();
+  private final LongAdder swapsRejected = new LongAdder();
+  private final LongAdder rollbacks = new LongAdder();
+  private final LongAdder nodeVisits = new LongAdder();
+  private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+  // per round state, only touched by the thread driving the rounds
+  private Round previous = new Round();
+  private Round current = new Round();
+  private long mark;
+  private Object event;
+
+  private volatile Round lastRound = new Round();
+  private ObjectName name;
+
+  public JabejaMetrics() {
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Adds the counts of a worker.
+   */
+  public void add(long candidates, long localHits, long randomHits, long accepted, long rejected) {
+    candidateEvaluations.add(candidates);
+    localPartnerHits.add(localHits);
+    randomPartnerHits.add(randomHits);
+    swapsAccepted.add(accepted);
+    swapsRejected.add(rejected);
+  }
+
+  /**
+   * Counts the nodes a round visits.
+   */
+  public void visit(long nodes) {
+    nodeVisits.add(nodes);
+  }
+
+  /**
+   * Counts a round whose swaps were undone.
+   */
+  public void rollback() {
+    rollbacks.increment();
+    current.rolledBack = true;
+  }
+
+  /**
+   * Starts timing a round, its first phase starts now.
+   */
+  public void startRound() {
+    current = new Round();
+    if (JFR != null) {
+      event = JFR.start();
+    }
+    mark = System.nanoTime();
+  }
+
+  /**
+   * Ends a phase of the round, the next phase starts now.
+   */
+  public void endPhase(Phase phase) {
+    long now = System.nanoTime();
+    current.phaseNanos[phase.ordinal()] += now - mark;
+    phaseNanos[phase.ordinal()].add(now - mark);
+    mark = now;
+  }
+
+  /**
+   * Ends the round and publishes its counts.
+   */
+  public void endRound(int round, int edgeCut) {
+    Round r = current;
+    r.round = round;
+    r.edgeCut = edgeCut;
+    r.candidateEvaluations = candidateEvaluations.sum();
+    r.localPartnerHits = localPartnerHits.sum();
+    r.randomPartnerHits = randomPartnerHits.sum();
+    r.swapsAccepted = swapsAccepted.sum();
+    r.swapsRejected = swapsRejected.sum();
+    r.nodeVisits = nodeVisits.sum();
+    if (JFR != null && event != null) {
+      JFR.commit(event, r.minus(previous));
+      event = null;
+    }
+    previous = r;
+    lastRound = r;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server. Failing to
+   * register is logged and otherwise ignored.
+   *
+   * @param graph name of the graph, part of the object name
+   */
+  public void register(String graph) {
+    try {
+      ObjectName objectName = new ObjectName("se.kth.jabeja:type=Jabeja,graph=" + ObjectName.quote(graph) +
+              ",id=" + instances.incrementAndGet());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      name = objectName;
+    } catch (JMException e) {
+      logger.warn("Unable to register the metrics MBean: " + e.getMessage());
+    }
+  }
+
+  public void unregister() {
+    if (name == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.unregisterMBean(name);
+    } catch (JMException e) {
+      logger.warn("Unable to unregister the metrics MBean: " + e.getMessage());
+    }
+    name = null;
+  }
+
+  @Override
+  public String toString() {
+    return "node visits: " + getNodeVisits() +
+            ", candidates: " + getCandidateEvaluations() +
+            ", local hits: " + getLocalPartnerHits() +
+            ", random hits: " + getRandomPartnerHits() +
+            ", accepted: " + getSwapsAccepted() +
+            ", rejected: " + getSwapsRejected() +
+            ", rollbacks: " + getRollbacks() +
+            ", sample and swap: " + getSampleAndSwapNanos() / 1000000 + " ms" +
+            ", cool down: " + getCoolDownNanos() / 1000000 + " ms" +
+            ", report: " + getReportNanos() / 1000000 + " ms";
+  }
+
+  @Override
+  public int getRound() {
+    return lastRound.round;
+  }
+
+  @Override
+  public int getEdgeCut() {
+    return lastRound.edgeCut;
+  }
+
+  @Override
+  public long getNodeVisits() {
+    return nodeVisits.sum();
+  }
+
+  @Override
+  public long getCandidateEvaluations() {
+    return candidateEvaluations.sum();
+  }
+
+  @Override
+  public long getLocalPartnerHits() {
+    return localPartnerHits.sum();
+  }
+
+  @Override
+  public long getRandomPartnerHits() {
+    return randomPartnerHits.sum();
+  }
+
+  @Override
+  public long getSwapsAccepted() {
+    return swapsAccepted.sum();
+  }
+
+  @Override
+  public long getSwapsRejected() {
+    return swapsRejected.sum();
+  }
+
+  @Override
+  public long getRollbacks() {
+    return rollbacks.sum();
+  }
+
+  @Override
+  public long getSampleAndSwapNanos() {
+    return phaseNanos[Phase.SAMPLE_AND_SWAP.ordinal()].sum();
+  }
+
+  @Override
+  public long getCoolDownNanos() {
+    return phaseNanos[Phase.COOL_DOWN.ordinal()].sum();
+  }
+
+  @Override
+  public long getReportNanos() {
+    return phaseNanos[Phase.REPORT.ordinal()].sum();
+  }
+
+  @Override
+  public long getLastRoundSampleAndSwapNanos() {
+    return lastRound.phaseNanos[Phase.SAMPLE_AND_SWAP.ordinal()];
+  }
+
+  @Override
+  public long getLastRoundCoolDownNanos() {
+    return lastRound.phaseNanos[Phase.COOL_DOWN.ordinal()];
+  }
+
+  @Override
+  public long getLastRoundReportNanos() {
+    return lastRound.phaseNanos[Phase.REPORT.ordinal()];
+  }
+
+  private static RoundRecorder jfrRecorder() {
+    try {
+      return (RoundRecorder) Class.forName(JFR_RECORDER).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // not in the jar, not on a Java 16+ runtime, or no jdk.jfr module
+      return null;
+    }
+  }
+
+  /**
+   * Counts of one round. The counters hold totals until {@link #minus}
+   * turns them into the counts of the round.
+   */
+  static class Round {
+    int round = -1;
+    int edgeCut;
+    boolean rolledBack;
+    long candidateEvaluations;
+    long localPartnerHits;
+    long randomPartnerHits;
+    long swapsAccepted;
+    long swapsRejected;
+    long nodeVisits;
+    final long[] phaseNanos = new long[Phase.values().length];
+
+    Round minus(Round before) {
+      Round r = new Round();
+      r.round = round;
+      r.edgeCut = edgeCut;
+      r.rolledBack = rolledBack;
+      r.candidateEvaluations = candidateEvaluations - before.candidateEvaluations;
+      r.localPartnerHits = localPartnerHits - before.localPartnerHits;
+      r.randomPartnerHits = randomPartnerHits - before.randomPartnerHits;
+      r.swapsAccepted = swapsAccepted - before.swapsAccepted;
+      r.swapsRejected = swapsRejected - before.swapsRejected;
+      r.nodeVisits = nodeVisits - before.nodeVisits;
+      System.arraycopy(phaseNanos, 0, r.phaseNanos, 0, phaseNanos.length);
+      return r;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package se.kth.jabeja.metrics;
+
+/**
+ * Management interface of {@link JabejaMetrics}. Counts are totals since
+ * the run started, times are in nanoseconds.
+ */
+public interface JabejaMetricsMBean {
+
+  int getRound();
+
+  int getEdgeCut();
+
+  long getNodeVisits();
+
+  long getCandidateEvaluations();
+
+  long getLocalPartnerHits();
+
+  long getRandomPartnerHits();
+
+  long getSwapsAccepted();
+
+  long getSwapsRejected();
+
+  long getRollbacks();
+
+  long getSampleAndSwapNanos();
+
+  long getCoolDownNanos();
+
+  long getReportNanos();
+
+  long getLastRoundSampleAndSwapNanos();
+
+  long getLastRoundCoolDownNanos();
+
+  long getLastRoundReportNanos();
+}
@@ -0,0 +1,18 @@
+package se.kth.jabeja.metrics;
+
+/**
+ * The timed phases of a round.
+ */
+public enum Phase {
+    SAMPLE_AND_SWAP("SAMPLE_AND_SWAP"),
+    COOL_DOWN("COOL_DOWN"),
+    REPORT("REPORT");
+    String name;
+    Phase(String name) {
+        this.name = name;
+    }
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,21 @@
+package se.kth.jabeja.metrics;
+
+/**
+ * Records rounds as flight recorder events. The implementation lives in
+ * the Java 16 part of the multi-release jar, so the main sources compile
+ * on any Java 8 JDK, including those without the jdk.jfr module.
+ */
+interface RoundRecorder {
+
+  /**
+   * @return the started event of a round
+   */
+  Object start();
+
+  /**
+   * Ends and commits an event returned by {@link #start()}.
+   *
+   * @param r the counts of the round
+   */
+  void commit(Object started, JabejaMetrics.Round r);
+}
@@ -0,0 +1,109 @@
+package se.kth.jabeja.rand;
+
+import se.kth.jabeja.graph.IntArray;
+
+import java.util.Random;
+
+/**
+ * Draws distinct ids into a reusable buffer without allocating.
+ *
+ * Ids are drawn one at a time and rejected when already drawn, exactly like
+ * the list based sampling it replaces, so a generator produces the same
+ * samples as before. Drawn ids are remembered in a bitset that is cleared
+ * again after every sample.
+ */
+public class DistinctSampler {
+  private final Random rand;
+  private final int[] buffer;
+  private final long[] chosen;
+
+  /**
+   * @param rand      the generator to draw from
+   * @param universe  ids are in [0, universe)
+   * @param maxSample largest sample that will be requested
+   */
+  public DistinctSampler(Random rand, int universe, int maxSample) {
+    this.rand = rand;
+    this.buffer = new int[Math.max(maxSample, 0)];
+    this.chosen = new long[(universe + 63) >>> 6];
+  }
+
+  public Random getRandom() {
+    return rand;
+  }
+
+  /**
+   * The buffer the last sample was written to. Reused by the next sample.
+   */
+  public int[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Draws count distinct ids uniformly from [0, size), excluding one id.
+   *
+   * @param size    number of ids to draw from
+   * @param count   sample size, capped at the number of eligible ids
+   * @param exclude id that is never drawn, or -1
+   * @return number of ids written to {@link #buffer()}
+   */
+  public int sample(int size, int count, int exclude) {
+    int eligible = exclude >= 0 && exclude < size ? size - 1 : size;
+    count = Math.min(Math.min(count, eligible), buffer.length);
+    int drawn = 0;
+    while (drawn < count) {
+      int id = rand.nextInt(size);
+      if (id != exclude && mark(id)) {
+        buffer[drawn++] = id;
+      }
+    }
+    clear(drawn);
+    return drawn;
+  }
+
+  /**
+   * Draws count distinct values uniformly from values[from, to). When the
+   * range has no more than count entries all of them are taken, in order.
+   *
+   * @return number of values written to {@link #buffer()}
+   */
+  public int sample(IntArray values, int from, int to, int count) {
+    int size = to - from;
+    if (size <= count) {
+      int n = Math.min(size, buffer.length);
+      for (int i = 0; i < n; i++) {
+        buffer[i] = values.get(from + i);
+      }
+      return n;
+    }
+    count = Math.min(count, buffer.length);
+    int drawn = 0;
+    while (drawn < count) {
+      int id = values.get(from + rand.nextInt(size));
+      if (mark(id)) {
+        buffer[drawn++] = id;
+      }
+    }
+    clear(drawn);
+    return drawn;
+  }
+
+  /**
+   * @return true if the id was not marked before
+   */
+  private boolean mark(int id) {
+    long bit = 1L << id;
+    int word = id >>> 6;
+    if ((chosen[word] & bit) != 0) {
+      return false;
+    }
+    chosen[word] |= bit;
+    return true;
+  }
+
+  private void clear(int drawn) {
+    for (int i = 0; i < drawn; i++) {
+      chosen[buffer[i] >>> 6] = 0;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package se.kth.jabeja.rand;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} whose state can be saved and restored. It is the same
+ * linear congruential generator as {@link Random}, so for the same seed it
+ * returns exactly the same numbers, but keeps its 48-bit state in a plain
+ * field. Unlike {@link Random} it is not thread safe; every thread has to
+ * use its own instance.
+ */
+public class LcgRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // no initializer, it is set by the super constructor through setSeed
+    private long state;
+
+    public LcgRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return the current 48-bit state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Continues from a state returned by {@link #getState()}.
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -13,7 +13,7 @@ public class RandNoGenerator {
 
     public static void setSeed(long seed){
         if(rand == null) {
-            rand = new Random(seed);
+            rand = new LcgRandom(seed);
         }else{
             throw new UnsupportedOperationException("The seed can be set only once");
         }
@@ -23,5 +23,12 @@ public class RandNoGenerator {
         return rand.nextInt(number);
     }
 
+    /**
+     * @return the shared generator, for code that draws from it directly
+     */
+    public static Random getRandom(){
+        return rand;
+    }
+
 
 }
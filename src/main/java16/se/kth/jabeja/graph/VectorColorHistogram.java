@@ -0,0 +1,72 @@
+package se.kth.jabeja.graph;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * {@link ColorHistogram} on the Vector API: the colors of a vector of
+ * neighbours are gathered at once and compared with every color, each
+ * bucket adding the number, or weight, of the matching lanes. The tail of
+ * the adjacency list that does not fill a vector is counted by the scalar
+ * loop.
+ *
+ * Only built for Java 16+, needs --add-modules jdk.incubator.vector at
+ * run time.
+ */
+final class VectorColorHistogram extends ColorHistogram {
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  private final int[] offsets;
+  private final int[] adjacency;
+  private final int[] weights;
+
+  VectorColorHistogram(Graph graph, int numColors) {
+    super(graph, numColors);
+    this.offsets = graph.getOffsets().array();
+    this.adjacency = graph.getAdjacency().array();
+    this.weights = graph.getEdgeWeights() == null ? null : graph.getEdgeWeights().array();
+    if (offsets == null || adjacency == null || (graph.getEdgeWeights() != null && weights == null)) {
+      throw new IllegalArgumentException("The vector kernel needs the topology on the heap");
+    }
+  }
+
+  @Override
+  public boolean isVectorized() {
+    return true;
+  }
+
+  @Override
+  public void count(int v, int[] histogram) {
+    Arrays.fill(histogram, 0, numColors, 0);
+    int[] colors = graph.getColors();
+    int from = offsets[v];
+    int to = offsets[v + 1];
+    int i = from;
+    int bound = from + SPECIES.loopBound(to - from);
+    if (weights == null) {
+      for (; i < bound; i += SPECIES.length()) {
+        IntVector lanes = IntVector.fromArray(SPECIES, colors, 0, adjacency, i);
+        for (int color = 0; color < numColors; color++) {
+          histogram[color] += lanes.eq(color).trueCount();
+        }
+      }
+      for (; i < to; i++) {
+        histogram[colors[adjacency[i]]]++;
+      }
+    } else {
+      for (; i < bound; i += SPECIES.length()) {
+        IntVector lanes = IntVector.fromArray(SPECIES, colors, 0, adjacency, i);
+        IntVector w = IntVector.fromArray(SPECIES, weights, i);
+        for (int color = 0; color < numColors; color++) {
+          histogram[color] += w.reduceLanes(VectorOperators.ADD, lanes.eq(color));
+        }
+      }
+      for (; i < to; i++) {
+        histogram[colors[adjacency[i]]] += weights[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package se.kth.jabeja.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event spanning one round, created through
+ * {@link Recorder}, which {@link JabejaMetrics} loads reflectively, so the
+ * engine still runs on JVMs without the jdk.jfr module.
+ */
+@Name("se.kth.jabeja.Round")
+@Label("JaBeJa Round")
+@Category("JaBeJa")
+@Description("One round of sample and swap over the scheduled nodes")
+class RoundEvent extends Event {
+  @Label("Round")
+  int round;
+
+  @Label("Edge Cut")
+  int edgeCut;
+
+  @Label("Rolled Back")
+  boolean rolledBack;
+
+  @Label("Node Visits")
+  long nodeVisits;
+
+  @Label("Candidate Evaluations")
+  long candidateEvaluations;
+
+  @Label("Local Partner Hits")
+  long localPartnerHits;
+
+  @Label("Random Partner Hits")
+  long randomPartnerHits;
+
+  @Label("Swaps Accepted")
+  long swapsAccepted;
+
+  @Label("Swaps Rejected")
+  long swapsRejected;
+
+  @Label("Sample And Swap")
+  @Timespan(Timespan.NANOSECONDS)
+  long sampleAndSwapNanos;
+
+  @Label("Cool Down")
+  @Timespan(Timespan.NANOSECONDS)
+  long coolDownNanos;
+
+  @Label("Report")
+  @Timespan(Timespan.NANOSECONDS)
+  long reportNanos;
+
+  static class Recorder implements RoundRecorder {
+    @Override
+    public Object start() {
+      RoundEvent event = new RoundEvent();
+      event.begin();
+      return event;
+    }
+
+    @Override
+    public void commit(Object started, JabejaMetrics.Round r) {
+      RoundEvent event = (RoundEvent) started;
+      event.end();
+      if (!event.shouldCommit()) {
+        return;
+      }
+      event.round = r.round;
+      event.edgeCut = r.edgeCut;
+      event.rolledBack = r.rolledBack;
+      event.nodeVisits = r.nodeVisits;
+      event.candidateEvaluations = r.candidateEvaluations;
+      event.localPartnerHits = r.localPartnerHits;
+      event.randomPartnerHits = r.randomPartnerHits;
+      event.swapsAccepted = r.swapsAccepted;
+      event.swapsRejected = r.swapsRejected;
+      event.sampleAndSwapNanos = r.phaseNanos[Phase.SAMPLE_AND_SWAP.ordinal()];
+      event.coolDownNanos = r.phaseNanos[Phase.COOL_DOWN.ordinal()];
+      event.reportNanos = r.phaseNanos[Phase.REPORT.ordinal()];
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package se.kth.jabeja.io;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncRoundWriterTest {
+
+  /**
+   * Fails on the given flush, optionally holding the first flush until released.
+   */
+  private static class FailingSink implements RoundSink {
+    private final int failingFlush;
+    private final CountDownLatch release;
+    private int flushes;
+    int written;
+    boolean closed;
+
+    FailingSink(int failingFlush, CountDownLatch release) {
+      this.failingFlush = failingFlush;
+      this.release = release;
+    }
+
+    @Override
+    public void write(RoundRecord record) {
+      written++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushes++;
+      if (flushes == 1 && release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (flushes == failingFlush) {
+        throw new IOException("disk full");
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static RoundRecord record(int round) {
+    return new RoundRecord(round, 0, 0, 0, 1, 0);
+  }
+
+  @Test(timeout = 5000)
+  public void closeFailsWhenTheLastBatchFails() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    FailingSink sink = new FailingSink(2, release);
+    AsyncRoundWriter writer = new AsyncRoundWriter(sink);
+    writer.write(record(0));
+    writer.write(record(1));
+    // lets the first batch finish once close has queued the end behind record 1
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        release.countDown();
+      }
+    }).start();
+    try {
+      writer.close();
+      fail("close should rethrow the failed flush");
+    } catch (IOException e) {
+      assertEquals("disk full", e.getCause().getMessage());
+    }
+    assertEquals(2, sink.written);
+    assertTrue(sink.closed);
+  }
+
+  @Test(timeout = 5000)
+  public void writesAfterAFailureDoNotBlock() throws Exception {
+    FailingSink sink = new FailingSink(1, null);
+    AsyncRoundWriter writer = new AsyncRoundWriter(sink, 2);
+    writer.write(record(0));
+    try {
+      for (int round = 1; round < 100; round++) {
+        writer.write(record(round));
+      }
+      fail("write should rethrow the failed flush");
+    } catch (IOException e) {
+      assertEquals("disk full", e.getCause().getMessage());
+    }
+    try {
+      writer.close();
+      fail("close should rethrow the failed flush");
+    } catch (IOException e) {
+      assertEquals("disk full", e.getCause().getMessage());
+    }
+  }
+}